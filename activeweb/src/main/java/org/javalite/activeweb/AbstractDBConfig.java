@@ -16,8 +16,13 @@ limitations under the License.
 package org.javalite.activeweb;
 
 
+import org.javalite.activejdbc.connection_config.ConnectionSpecWrapper;
 import org.javalite.activejdbc.connection_config.DbConfiguration;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
 /**
  * This class is designed to be sub-classed by an application level class called <code>app.config.DbConfig</code>.
  * It is used to configure database connections for various <strong>environments and modes</strong>.
@@ -66,11 +71,23 @@ import org.javalite.activejdbc.connection_config.DbConfiguration;
  * for Jenkins environment, just one for testing.
  * <li>Line 6: This is configuration similar to one on line 3, but for "production" environment.
  * </ul>
+ * <p/>
+ * <h4>Read replicas</h4>
+ * Connections to read replicas of a database are configured with {@link #replica(String)}:
+ * <pre>
+ *     environment("production").jndi("jdbc/primary");
+ *     replica("production").jndi("jdbc/replica1");
+ *     replica("production").jndi("jdbc/replica2");
+ * </pre>
+ * Replicas are not opened by ActiveJDBC on their own, they are used by
+ * {@link org.javalite.activeweb.controller_filters.DBConnectionFilter} for read-only actions.
  *
  * @author Igor Polevoy
  */
 public abstract class AbstractDBConfig extends DbConfiguration implements AppConfig {
 
+    private static HashMap<String, List<ConnectionSpecWrapper>> replicaWrappers = new HashMap<>();
+
     /**
      * @param environment name of environment (corresponds to env var ACTIVE_ENV)
      * @return builder instance
@@ -88,6 +105,41 @@ public abstract class AbstractDBConfig extends DbConfiguration implements AppCon
         return new ConnectionBuilder(environment, override);
     }
 
+    /**
+     * Configures a connection to a read replica of a database. Name of the database set with
+     * {@link ConnectionBuilder#db(String)} must match that of the primary connection.
+     *
+     * @param environment name of environment (corresponds to env var ACTIVE_ENV)
+     * @return builder instance
+     */
+    public ConnectionBuilder replica(String environment) {
+        ConnectionSpecWrapper wrapper = new ConnectionSpecWrapper();
+        wrapper.setEnvironment(environment);
+        replicaWrappers.computeIfAbsent(environment, e -> new ArrayList<>()).add(wrapper);
+        return new ConnectionBuilder(wrapper);
+    }
+
+    /**
+     * @param dbName name of database
+     * @return connections to read replicas of a named database configured for current environment, empty list if none.
+     */
+    public static List<ConnectionSpecWrapper> getReplicaConnectionSpecWrappers(String dbName) {
+        List<ConnectionSpecWrapper> result = new ArrayList<>();
+        for (ConnectionSpecWrapper wrapper : replicaWrappers.getOrDefault(Configuration.getEnv(), new ArrayList<>())) {
+            if (wrapper.getDbName().equals(dbName)) {
+                result.add(wrapper);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all configured connections to read replicas.
+     */
+    public static void clearReplicaConnectionWrappers() {
+        replicaWrappers.clear();
+    }
+
     /**
      * Configures multiple database connections from a single property file. Example content for such file:
      *
@@ -90,6 +90,23 @@ public abstract class AppController extends HttpSupport {
         return Configuration.getDefaultLayout();
     }
 
+    /**
+     * Override this method to return true in order to send the head of a layout (everything above
+     * <code>${page_content}</code>) to the client before an action executes. This lets browsers start fetching
+     * stylesheets and scripts while the action is still loading data. Applies to GET requests only.
+     * Output stops at the first <code>&lt;@yield&gt;</code> above <code>${page_content}</code>, because its content
+     * comes from the page.
+     *
+     * <p>Since the response is committed before the action executes, the head of the layout must not depend on
+     * values assigned by the action, and the action cannot change status, headers or layout, or redirect.
+     * If an action fails, the error page is rendered inside the layout already sent.</p>
+     *
+     * @return false by default, true to flush head of layout before action executes.
+     */
+    protected boolean flushLayoutHead(){
+        return false;
+    }
+
     /**
      * Returns hardcoded value "text/html". Override this method to set default content type to a different value across
      * all actions in controller and its subclasses. This is a convenient method for building REST webservices. You can set
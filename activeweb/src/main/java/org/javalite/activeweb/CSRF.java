@@ -1,13 +1,17 @@
 package org.javalite.activeweb;
 
-import org.javalite.common.Util;
-
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.javalite.common.Util.blank;
+
 /**
  * Responsible for generating tokens for CSRF protection support.
  */
@@ -17,40 +21,228 @@ public class CSRF {
     public static final String CSRF_TOKEN_VALUE = "CSRF_TOKEN_VALUE";
     public static final String HTTP_HEADER_NAME = "X-CSRF-Token";
 
-    interface TokenProvider {
+    public interface TokenProvider {
         String nextName();
         String nextToken();
     }
 
     /**
-     * Used to generate a new name and token for CSRF protection.
+     * Used to generate a new name and token for CSRF protection. Each thread has its own pseudo random generator,
+     * seeded from a non-blocking source of the operating system and reseeded after {@link #RESEED_INTERVAL}
+     * tokens, so that generating a token never waits for the entropy pool of the operating system.
      */
-    private static class SecureRandomTokenProvider implements TokenProvider {
+    static class SecureRandomTokenProvider implements TokenProvider {
+
+        static final int TOKEN_BYTES = 32, RESEED_INTERVAL = 10000;
 
-        private String base = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ1234567890";
+        private static final char[] NAME_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ1234567890".toCharArray();
+        private static final char[] BASE64_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
 
-        private ThreadLocal<SecureRandom> secureRandom = ThreadLocal.withInitial(() -> {
+        private final SecureRandom seedSource = seedSource();
+        private final ThreadLocal<Generator> generator = ThreadLocal.withInitial(Generator::new);
+
+        private static SecureRandom seedSource() {
             try {
-                return SecureRandom.getInstance("SHA1PRNG");
-            } catch(NoSuchAlgorithmException e) {
-                throw new RuntimeException(e.getMessage(), e);
+                return SecureRandom.getInstance("NativePRNGNonBlocking"); // reads /dev/urandom
+            } catch (NoSuchAlgorithmException e) {
+                return new SecureRandom(); // not a Unix platform
             }
-        });
+        }
 
         @Override
         public String nextName() {
-            StringBuilder name = new StringBuilder();
-            SecureRandom sr = secureRandom.get();
-            //get random characters to make a new name
-            while(name.length() < 8) {
-                name.append(base.charAt((int)(sr.nextFloat() * base.length())));
+            SecureRandom random = generator.get().random();
+            char[] name = new char[8];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = NAME_CHARS[random.nextInt(NAME_CHARS.length)];
             }
-            return name.toString();
+            return new String(name);
         }
 
         @Override
         public String nextToken() {
-            return Util.toBase64(secureRandom.get().generateSeed(32));
+            Generator generator = this.generator.get();
+            generator.random().nextBytes(generator.bytes);
+            return toBase64(generator.bytes);
+        }
+
+        /**
+         * Same as {@link org.javalite.common.Util#toBase64(byte[])}, but encodes directly into characters of the result.
+         */
+        static String toBase64(byte[] bytes) {
+            char[] chars = new char[(bytes.length + 2) / 3 * 4];
+            int c = 0, i = 0;
+            for (; i + 2 < bytes.length; i += 3) {
+                int triple = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+                chars[c++] = BASE64_CHARS[triple >>> 18];
+                chars[c++] = BASE64_CHARS[triple >>> 12 & 0x3f];
+                chars[c++] = BASE64_CHARS[triple >>> 6 & 0x3f];
+                chars[c++] = BASE64_CHARS[triple & 0x3f];
+            }
+            if (i < bytes.length) {
+                int rest = (bytes[i] & 0xff) << 16 | (i + 1 < bytes.length ? (bytes[i + 1] & 0xff) << 8 : 0);
+                chars[c++] = BASE64_CHARS[rest >>> 18];
+                chars[c++] = BASE64_CHARS[rest >>> 12 & 0x3f];
+                chars[c++] = i + 1 < bytes.length ? BASE64_CHARS[rest >>> 6 & 0x3f] : '=';
+                chars[c] = '=';
+            }
+            return new String(chars);
+        }
+
+        private class Generator {
+            private final SecureRandom random;
+            private final byte[] bytes = new byte[TOKEN_BYTES];
+            private int count;
+
+            Generator() {
+                try {
+                    random = SecureRandom.getInstance("SHA1PRNG");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new RuntimeException(e.getMessage(), e);
+                }
+                reseed(); // seeding before first use keeps SHA1PRNG from seeding itself with a blocking call
+            }
+
+            SecureRandom random() {
+                if (++count > RESEED_INTERVAL) {
+                    reseed();
+                }
+                return random;
+            }
+
+            private void reseed() {
+                byte[] seed = new byte[TOKEN_BYTES];
+                seedSource.nextBytes(seed);
+                random.setSeed(seed);
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Issues tokens that are verified without HTTP session, so that pages with forms do not create sessions.
+     * A token is an expiration time signed with HMAC-SHA256 together with a key of the client. The key is a random
+     * value of cookie {@link #COOKIE_NAME}, sent to the client along with its first token. Since another site
+     * can neither read the cookie nor forge the signature, it cannot submit a valid token. Usage:
+     *
+     * <pre>
+     *     CSRF.setTokenProvider(new CSRF.SignedTokenProvider(secret, 3600));
+     *     CSRF.enableVerification();
+     * </pre>
+     *
+     * The secret must be the same on all nodes of the application. Tokens have the same name, {@link #PARAM_NAME},
+     * for all clients. The cookie is set when a token is rendered, so with property <code>streamLayouts</code>
+     * the first token of a client must be generated before the response is committed.
+     */
+    public static class SignedTokenProvider implements TokenProvider {
+
+        public static final String COOKIE_NAME = "csrf_key";
+        public static final String PARAM_NAME = "csrf_token";
+
+        private final SecretKeySpec secret;
+        private final long ttlSeconds;
+        private final SecureRandomTokenProvider keys = new SecureRandomTokenProvider();
+        private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(this::createMac);
+
+        /**
+         * @param secret secret key for signing tokens, at least 32 bytes.
+         * @param ttlSeconds number of seconds a token is valid after it is generated.
+         */
+        public SignedTokenProvider(byte[] secret, long ttlSeconds) {
+            if (secret.length < 32) {
+                throw new IllegalArgumentException("secret must have at least 32 bytes");
+            }
+            this.secret = new SecretKeySpec(secret, "HmacSHA256");
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        @Override
+        public String nextName() {
+            return PARAM_NAME;
+        }
+
+        @Override
+        public String nextToken() {
+            return sign(clientKey(true), System.currentTimeMillis() / 1000 + ttlSeconds);
+        }
+
+        /**
+         * @param token token received from a client.
+         * @return true if the token was issued to the client of current request and did not expire.
+         */
+        public boolean verify(String token) {
+            int dot = token.indexOf('.');
+            if (dot < 1) {
+                return false;
+            }
+            long expires;
+            try {
+                expires = Long.parseLong(token.substring(0, dot));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            String key = clientKey(false);
+            return key != null && expires >= System.currentTimeMillis() / 1000
+                    && MessageDigest.isEqual(sign(key, expires).getBytes(), token.getBytes());
+        }
+
+        /**
+         * Key of the client that tokens are bound to. Subclasses can override this method to bind tokens to
+         * something else, for instance to a user ID.
+         *
+         * @param create true to create a key if the client does not have one yet.
+         * @return key of the client of current request, null if the client has no key and <code>create</code>
+         * is false.
+         */
+        protected String clientKey(boolean create) {
+            HttpServletRequest request = RequestContext.getHttpRequest();
+            if (request == null) {
+                throw new RuntimeException("Request not found!");
+            }
+            String key = (String) request.getAttribute(COOKIE_NAME);
+            if (key == null && request.getCookies() != null) {
+                for (Cookie cookie : request.getCookies()) {
+                    if (COOKIE_NAME.equals(cookie.getName())) {
+                        key = cookie.getValue();
+                        break;
+                    }
+                }
+            }
+            if (key == null && create) {
+                key = urlSafe(keys.nextToken());
+                Cookie cookie = new Cookie(COOKIE_NAME, key);
+                cookie.setPath(blank(request.getContextPath()) ? "/" : request.getContextPath());
+                cookie.setHttpOnly(true);
+                cookie.setSecure(request.isSecure());
+                RequestContext.getHttpResponse().addCookie(cookie);
+            }
+            if (key != null) {
+                request.setAttribute(COOKIE_NAME, key);
+            }
+            return key;
+        }
+
+        private String sign(String key, long expires) {
+            Mac mac = this.mac.get();
+            mac.update(key.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) '.');
+            String expiresText = Long.toString(expires);
+            return expiresText + '.' + urlSafe(SecureRandomTokenProvider.toBase64(mac.doFinal(expiresText.getBytes(StandardCharsets.UTF_8))));
+        }
+
+        private static String urlSafe(String base64) {
+            int end = base64.indexOf('=');
+            return (end < 0 ? base64 : base64.substring(0, end)).replace('+', '-').replace('/', '_');
+        }
+
+        private Mac createMac() {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(secret);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
         }
     }
 
@@ -84,29 +276,51 @@ public class CSRF {
         if (request == null) {
             throw new RuntimeException("Request not found!");
         }
-        HttpSession session = request.getSession(false);
-        if (session == null) {
-            throw new RuntimeException("Session not initialized!");
-        }
-        return session;
+        return request.getSession(true);
+    }
+
+    /**
+     * @return true if tokens are verified without HTTP session, see {@link SignedTokenProvider}.
+     */
+    public static boolean signedTokens() {
+        return tokenProvider.get() instanceof SignedTokenProvider;
+    }
+
+    /**
+     * Verifies a token issued by {@link SignedTokenProvider}.
+     *
+     * @param token token received from a client.
+     * @return true if the token is valid for the client of current request.
+     */
+    public static boolean verifySignedToken(String token) {
+        TokenProvider provider = tokenProvider.get();
+        return provider instanceof SignedTokenProvider && ((SignedTokenProvider) provider).verify(token);
     }
 
     public static String token() {
+        if (signedTokens()) {
+            return tokenProvider.get().nextToken();
+        }
         HttpSession session = getSession();
         String token = (String) session.getAttribute(CSRF_TOKEN_VALUE);
         if (token == null) {
             token = tokenProvider.get().nextToken();
             session.setAttribute(CSRF_TOKEN_VALUE, token);
+            SessionHelper.attributeSet(CSRF_TOKEN_VALUE, token);
         }
         return token;
     }
 
     public static String name() {
+        if (signedTokens()) {
+            return tokenProvider.get().nextName();
+        }
         HttpSession session = getSession();
         String name = (String) session.getAttribute(CSRF_TOKEN_NAME);
         if (name == null) {
             name = tokenProvider.get().nextName();
             session.setAttribute(CSRF_TOKEN_NAME, name);
+            SessionHelper.attributeSet(CSRF_TOKEN_NAME, name);
         }
         return name;
     }
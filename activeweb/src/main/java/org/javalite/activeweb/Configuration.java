@@ -28,6 +28,7 @@ import java.util.*;
 
 import static org.javalite.common.Collections.list;
 import static org.javalite.common.Util.blank;
+import static org.javalite.common.Util.split;
 
 /**
  * @author Igor Polevoy
@@ -244,6 +245,21 @@ public class Configuration {
         return get(Params.defaultLayout.toString());
     }
 
+    /**
+     * @return storage of the template cache, see property <code>templateCacheStorage</code>; null if not provided.
+     */
+    public static String getTemplateCacheStorage() {
+        return get("templateCacheStorage");
+    }
+
+    /**
+     * @return delay between checks of templates for changes, see property <code>templateUpdateDelay</code>;
+     * null if not provided.
+     */
+    public static String getTemplateUpdateDelay() {
+        return get("templateUpdateDelay");
+    }
+
     public static String getBootstrapClassName() {
         return get(Params.bootstrap.toString());
     }
@@ -272,6 +288,132 @@ public class Configuration {
         return Boolean.parseBoolean(get(Params.rollback.toString().trim()));  
     }
 
+    /**
+     * @return true if pages are to be streamed into layouts, see property <code>streamLayouts</code>.
+     */
+    public static boolean streamLayouts() {
+        return Boolean.parseBoolean(get("streamLayouts"));
+    }
+
+    /**
+     * @return true if templates are to be parsed at application start, see property <code>warmUpTemplates</code>.
+     */
+    public static boolean warmUpTemplates() {
+        return Boolean.parseBoolean(get("warmUpTemplates"));
+    }
+
+    /**
+     * @return maximum total length of fragments cached by <code>&lt;@cache&gt;</code> tag in characters,
+     * see property <code>fragmentCacheSize</code>.
+     */
+    public static long getFragmentCacheSize() {
+        return Long.parseLong(get("fragmentCacheSize").trim());
+    }
+
+    /**
+     * @return base package of classes generated from templates by
+     * {@link org.javalite.activeweb.freemarker.TemplateCompiler}, see property <code>compiledTemplatesPackage</code>.
+     */
+    public static String getCompiledTemplatesPackage() {
+        return get("compiledTemplatesPackage");
+    }
+
+    /**
+     * @return true if static text of templates is to be encoded once and written to responses as bytes,
+     * see property <code>preEncodeTemplateText</code>.
+     */
+    public static boolean preEncodeTemplateText() {
+        return Boolean.parseBoolean(get("preEncodeTemplateText"));
+    }
+
+    /**
+     * @return true if query parameters of generated URIs are to be sorted by name, see property
+     * <code>sortQueryParams</code>.
+     */
+    public static boolean sortQueryParams() {
+        return Boolean.parseBoolean(get("sortQueryParams"));
+    }
+
+    /**
+     * @return where sessions are kept: "container" for sessions of servlet container, "cookie" for encrypted
+     * cookies, "offheap" for memory outside of Java heap, see property <code>sessionStore</code>.
+     */
+    public static String getSessionStore() {
+        return get("sessionStore").trim();
+    }
+
+    /**
+     * @return AES keys that encrypt session cookies, the first one encrypts new cookies, see property
+     * <code>sessionCookieKeys</code>; empty array if not provided.
+     */
+    public static byte[][] getSessionCookieKeys() {
+        String keys = get("sessionCookieKeys");
+        if (blank(keys)) {
+            return new byte[0][];
+        }
+        String[] encodedKeys = split(keys, ',');
+        byte[][] result = new byte[encodedKeys.length][];
+        for (int i = 0; i < encodedKeys.length; i++) {
+            result[i] = Base64.getDecoder().decode(encodedKeys[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return names of classes, or packages ending with ".*", allowed in session cookies in addition to strings,
+     * numbers, dates and collections, see property <code>sessionCookieClasses</code>; empty array if not provided.
+     */
+    public static String[] getSessionCookieClasses() {
+        String classes = get("sessionCookieClasses");
+        return blank(classes) ? new String[0] : split(classes, ',');
+    }
+
+    /**
+     * @return maximum length of a session cookie, see property <code>sessionCookieMaxSize</code>.
+     */
+    public static int getSessionCookieMaxSize() {
+        return Integer.parseInt(get("sessionCookieMaxSize").trim());
+    }
+
+    /**
+     * @return maximum total size in bytes of sessions kept outside of Java heap, see property
+     * <code>offHeapSessionsMaxSize</code>.
+     */
+    public static long getOffHeapSessionsMaxSize() {
+        return Long.parseLong(get("offHeapSessionsMaxSize").trim());
+    }
+
+    /**
+     * @return where flash values are kept between requests: "session" or "cookie", see property <code>flashStore</code>.
+     */
+    public static String getFlashStore() {
+        return get("flashStore").trim();
+    }
+
+    /**
+     * @return key that signs flash cookies, see property <code>flashCookieKey</code>; null if not provided.
+     */
+    public static byte[] getFlashCookieKey() {
+        String key = get("flashCookieKey");
+        return blank(key) ? null : Base64.getDecoder().decode(key.trim());
+    }
+
+    /**
+     * @return locales of the application, see property <code>locales</code>; empty array if not provided.
+     */
+    public static Locale[] getLocales() {
+        String locales = get("locales");
+        if (blank(locales)) {
+            return new Locale[0];
+        }
+        String[] tags = split(locales, ',');
+        Locale[] result = new Locale[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            result[i] = Locale.forLanguageTag(tags[i].replace('_', '-'));
+        }
+        return result;
+    }
+
     public static boolean activeReload(){
         return activeReload;
     }
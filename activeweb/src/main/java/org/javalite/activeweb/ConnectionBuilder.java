@@ -37,6 +37,10 @@ public class ConnectionBuilder {
         DbConfiguration.addConnectionWrapper(connectionWrapper, false);
     }
 
+    ConnectionBuilder(ConnectionSpecWrapper connectionWrapper) {
+        this.connectionWrapper = connectionWrapper;
+    }
+
     ConnectionBuilder(String environment, boolean override) {
         connectionWrapper = new ConnectionSpecWrapper();
         connectionWrapper.setEnvironment(environment);
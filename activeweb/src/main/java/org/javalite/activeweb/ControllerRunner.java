@@ -24,11 +24,14 @@ import org.javalite.common.Inflector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import static org.javalite.common.Util.join;
@@ -53,6 +56,7 @@ class ControllerRunner {
         }catch(ActionNotFoundException e){
             throw e;
         }catch (RuntimeException e) {
+            RequestContext.closeCursors();
             RequestContext.setControllerResponse(null);//must blow away, as this response is not valid anymore.
             RequestContext.exceptionDidHappen();
             if (exceptionHandled(e, route)) {
@@ -62,16 +66,18 @@ class ControllerRunner {
                 throw e;//if exception was not handled by filter, re-throw
             }
         }finally {
+            RequestContext.closeCursors(); // before filters close connections
             filterAfter(route);
         }
     }
 
-    private void executeController(Route route) throws IllegalAccessException, InstantiationException {
+    private void executeController(Route route) throws IllegalAccessException, InstantiationException, IOException {
         if (RequestContext.getControllerResponse() == null) {//execute controller... only if a filter did not respond
 
             String actionMethod = Inflector.camelize(route.getActionName().replace('-', '_'), false);
             if (checkActionMethod(route.getController(), actionMethod) || route.isCustom()) {
                 injectController(route.getController());
+                flushLayoutHead(route);
                 LOGGER.debug("Executing: " + route.getController() + "#" + actionMethod);
                 executeAction(route.getController(), actionMethod);
             }
@@ -82,7 +88,9 @@ class ControllerRunner {
         }
 
         renderResponse(route);
-        processFlash();
+        if (!CookieFlash.enabled()) {
+            processFlash();
+        }
     }
 
     private void executeAction(Object controller, String actionName) {
@@ -107,6 +115,40 @@ class ControllerRunner {
         }
     }
 
+    /**
+     * Sends head of a layout to the client before action executes, if controller requested it.
+     */
+    private void flushLayoutHead(Route route) throws IOException {
+        AppController controller = route.getController();
+        String layout = controller.getLayout();
+        if (layout == null || !controller.flushLayoutHead()
+                || HttpMethod.getMethod(RequestContext.getHttpRequest()) != HttpMethod.GET) {
+            return;
+        }
+
+        if(injectTags){
+            injectFreemarkerTags();
+        }
+
+        HttpServletResponse response = RequestContext.getHttpResponse();
+        if (controller.getEncoding() != null) {
+            response.setCharacterEncoding(controller.getEncoding());
+        }
+        response.setContentType(controller.getContentType());
+
+        if (CookieFlash.enabled()) {
+            CookieFlash.get().send(response); // flash set by the action after this cannot be sent
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> values = new HashMap<>(controller.values());
+        ParamCopy.copyInto(values);
+        if (Configuration.getTemplateManager().mergeLayoutHead(values, layout, response.getWriter())) {
+            LOGGER.debug("Flushed head of layout: " + layout + " before executing action");
+            response.flushBuffer();
+        }
+    }
+
     /**
      * Injects FreeMarker tags with dependencies from Guice module.
      */
@@ -134,7 +176,11 @@ class ControllerRunner {
     }
 
 
-    private void renderResponse(Route route) throws InstantiationException, IllegalAccessException {
+    private void renderResponse(Route route) throws InstantiationException, IllegalAccessException, IOException {
+
+        if (CookieFlash.enabled()) {
+            CookieFlash.get().send(RequestContext.getHttpResponse()); // before the response is committed
+        }
 
         //set encoding. Priority: action, then controller
         if (RequestContext.getEncoding() != null) {
@@ -152,7 +198,11 @@ class ControllerRunner {
         }
 
         controllerResponse = RequestContext.getControllerResponse();
-        if (controllerResponse instanceof RenderTemplateResponse) {
+        if (RequestContext.getLayoutHead() != null && !(controllerResponse instanceof RenderTemplateResponse)) {
+            LOGGER.warn("Cannot send " + controllerResponse.getClass().getSimpleName()
+                    + " because head of layout was already sent to the client, completing layout instead.");
+            Configuration.getTemplateManager().completeLayout(RequestContext.getHttpResponse().getWriter());
+        } else if (controllerResponse instanceof RenderTemplateResponse) {
             ParamCopy.copyInto((controllerResponse.values()));
             controllerResponse.process();
         }else {
@@ -202,6 +252,7 @@ class ControllerRunner {
                     flasher.put("count", 0);
                 } else if (flasher.get("count").equals(0)) {
                     session.removeAttribute("flasher");
+                    SessionHelper.attributeRemoved("flasher");
                 }
             }
         }
@@ -0,0 +1,187 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.javalite.common.JsonHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.javalite.common.Util.blank;
+
+/**
+ * Flash values carried to the next request in a signed cookie rather than in session, so that flash does not
+ * create sessions. Used if property <code>flashStore</code> is "cookie". Values are sent as JSON, so they should be
+ * strings, numbers, booleans, lists or maps. The cookie is signed with property <code>flashCookieKey</code>,
+ * so that clients cannot forge flash messages.
+ * <p></p>
+ * Like a flash in session, values are visible in the request that sets them, and in the next request.
+ *
+ * @author Igor Polevoy
+ */
+class CookieFlash {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CookieFlash.class);
+
+    static final String COOKIE_NAME = "aw_flash";
+
+    private static volatile boolean enabled = Configuration.getFlashStore().equals("cookie");
+    private static volatile SecretKeySpec key;
+
+    private final HttpServletRequest request;
+    private Map<String, Object> incoming;
+    private final Map<String, Object> outgoing = new HashMap<>();
+    private Map<String, Object> sent;
+
+    private CookieFlash(HttpServletRequest request) {
+        this.request = request;
+    }
+
+    static boolean enabled() {
+        return enabled;
+    }
+
+    static void setEnabled(boolean enabled) {
+        CookieFlash.enabled = enabled;
+    }
+
+    /**
+     * Sets key that signs flash cookies. Nodes of a cluster must use the same key, so that flash set by one node
+     * is read by another.
+     *
+     * @param bytes key, usually from property <code>flashCookieKey</code>.
+     */
+    static void setKey(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new InitException("property flashCookieKey must have a key when property flashStore is 'cookie'");
+        }
+        key = new SecretKeySpec(bytes, "HmacSHA256");
+    }
+
+    /**
+     * @return flash of current request.
+     */
+    static CookieFlash get() {
+        CookieFlash flash = RequestContext.getCookieFlash();
+        if (flash == null) {
+            flash = new CookieFlash(RequestContext.getHttpRequest());
+            RequestContext.setCookieFlash(flash);
+        }
+        return flash;
+    }
+
+    void put(String name, Object value) {
+        outgoing.put(name, value);
+    }
+
+    /**
+     * @return values received from previous request and values set in this request, null if there are none.
+     */
+    Map<String, Object> values() {
+        Map<String, Object> values = new HashMap<>(incoming());
+        values.putAll(outgoing);
+        return values.isEmpty() ? null : values;
+    }
+
+    /**
+     * Sends values set in this request to the client, or deletes the cookie of previous request. Can be called
+     * more than once, such as before head of a layout is flushed and again before the response is rendered;
+     * the cookie is sent again only if values changed.
+     */
+    void send(HttpServletResponse response) {
+        if ((outgoing.isEmpty() && cookieValue() == null) || outgoing.equals(sent)) {
+            return;
+        }
+        if (response.isCommitted()) {
+            LOGGER.warn("Cannot send flash, response is already committed");
+            return;
+        }
+        sent = new HashMap<>(outgoing);
+        Cookie cookie;
+        if (outgoing.isEmpty()) {
+            cookie = new Cookie(COOKIE_NAME, "");
+            cookie.setMaxAge(0);
+        } else {
+            String json = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    JsonHelper.toJsonString(outgoing).getBytes(StandardCharsets.UTF_8));
+            cookie = new Cookie(COOKIE_NAME, json + '.' + sign(json));
+        }
+        cookie.setPath(blank(request.getContextPath()) ? "/" : request.getContextPath());
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        response.addCookie(cookie);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> incoming() {
+        if (incoming == null) {
+            incoming = new HashMap<>();
+            String value = cookieValue();
+            int dot = value == null ? -1 : value.indexOf('.');
+            if (dot > 0) {
+                String json = value.substring(0, dot);
+                if (MessageDigest.isEqual(sign(json).getBytes(), value.substring(dot + 1).getBytes())) {
+                    try {
+                        incoming = JsonHelper.toMap(new String(Base64.getUrlDecoder().decode(json), StandardCharsets.UTF_8));
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Failed to read flash from cookie: " + e);
+                    }
+                }
+            }
+        }
+        return incoming;
+    }
+
+    private String cookieValue() {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE_NAME.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String sign(String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key());
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(data.getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new WebException(e);
+        }
+    }
+
+    private static SecretKeySpec key() {
+        if (key == null) {
+            throw new WebException("flash cookie key is not set, see property flashCookieKey");
+        }
+        return key;
+    }
+}
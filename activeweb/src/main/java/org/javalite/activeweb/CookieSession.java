@@ -0,0 +1,307 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.*;
+import java.util.*;
+
+import static org.javalite.common.Util.blank;
+
+/**
+ * Session kept in a cookie sealed by {@link CookieSessionStore}. The cookie is only decoded when the session is
+ * accessed, and only written back to the client when the session changed, including changes of objects inside
+ * the session, or when the session is a quarter of its time to live away from expiring. Attributes are read back
+ * only if they are of classes allowed by {@link SessionObjectInputStream}.
+ * <p></p>
+ * There is no state on the server: {@link #invalidate()} deletes the cookie in the browser, but a copy of the cookie
+ * taken earlier stays valid until the session expires after its maximum inactive interval. To revoke all sessions,
+ * replace the first key in property <code>sessionCookieKeys</code> and remove the old keys.
+ *
+ * @author Igor Polevoy
+ */
+class CookieSession implements HttpSession {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CookieSession.class);
+
+    private final HttpServletRequest request;
+    private final CookieSessionStore store;
+    private final String cookieValue;
+
+    private HashMap<String, Object> attributes;
+    private byte[] loaded;
+    private String id;
+    private long creationTime, lastAccessedTime;
+    private int maxInactiveInterval;
+    private boolean isNew, invalid;
+
+    /**
+     * @param cookieValue value of session cookie sent by the client, null if there is none.
+     */
+    CookieSession(HttpServletRequest request, CookieSessionStore store, String cookieValue) {
+        this.request = request;
+        this.store = store;
+        this.cookieValue = cookieValue;
+    }
+
+    private void load() {
+        if (attributes != null) {
+            return;
+        }
+        byte[] data = cookieValue == null ? null : store.unseal(cookieValue);
+        if (data != null && read(data)
+                && System.currentTimeMillis() - lastAccessedTime <= maxInactiveInterval * 1000L) {
+            loaded = data;
+        } else {
+            reset();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean read(byte[] data) {
+        try (ObjectInputStream in = new SessionObjectInputStream(new ByteArrayInputStream(data), store.getSessionClasses())) {
+            id = in.readUTF();
+            creationTime = in.readLong();
+            lastAccessedTime = in.readLong();
+            maxInactiveInterval = in.readInt();
+            attributes = (HashMap<String, Object>) in.readObject();
+            return true;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.warn("Failed to read session from cookie, starting new session: " + e);
+            return false;
+        }
+    }
+
+    private byte[] write() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeUTF(id);
+            out.writeLong(creationTime);
+            out.writeLong(lastAccessedTime);
+            out.writeInt(maxInactiveInterval);
+            out.writeObject(attributes);
+        } catch (IOException e) {
+            throw new WebException("Failed to write session to cookie", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void reset() {
+        attributes = new HashMap<>();
+        loaded = null;
+        id = store.newId();
+        creationTime = lastAccessedTime = System.currentTimeMillis();
+        maxInactiveInterval = CookieSessionStore.DEFAULT_MAX_INACTIVE_INTERVAL;
+        isNew = true;
+        invalid = false;
+    }
+
+    boolean isValid() {
+        return !invalid;
+    }
+
+    /**
+     * Makes an invalidated session usable again, as a new session.
+     */
+    void renew() {
+        reset();
+    }
+
+    void changeId() {
+        load();
+        id = store.newId();
+    }
+
+    /**
+     * @return true if the session needs to be written to the client.
+     */
+    boolean changed() {
+        if (attributes == null) {
+            return false; // not accessed
+        }
+        if (invalid) {
+            return cookieValue != null;
+        }
+        if (loaded == null) {
+            return !attributes.isEmpty() || cookieValue != null;
+        }
+        return System.currentTimeMillis() - lastAccessedTime > maxInactiveInterval * 250L || !Arrays.equals(loaded, write());
+    }
+
+    /**
+     * Adds a session cookie to response if the session changed.
+     */
+    void save(HttpServletResponse response) {
+        if (!changed()) {
+            return;
+        }
+        Cookie cookie;
+        if (invalid || attributes.isEmpty()) {
+            cookie = new Cookie(CookieSessionStore.COOKIE_NAME, "");
+            cookie.setMaxAge(0);
+        } else {
+            lastAccessedTime = System.currentTimeMillis();
+            byte[] data = write();
+            String value = store.seal(data);
+            if (value.length() > store.getMaxSize()) {
+                LOGGER.error("Session of " + value.length() + " bytes exceeds property sessionCookieMaxSize, changes of session "
+                        + "are lost. Attributes: " + attributes.keySet());
+                return;
+            }
+            loaded = data;
+            cookie = new Cookie(CookieSessionStore.COOKIE_NAME, value);
+        }
+        cookie.setPath(blank(request.getContextPath()) ? "/" : request.getContextPath());
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        response.addCookie(cookie);
+    }
+
+    private void checkValid() {
+        if (invalid) {
+            throw new IllegalStateException("session was invalidated");
+        }
+    }
+
+    @Override
+    public long getCreationTime() {
+        load();
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public String getId() {
+        load();
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        load();
+        checkValid();
+        return lastAccessedTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return request.getServletContext();
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        load();
+        maxInactiveInterval = interval;
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        load();
+        return maxInactiveInterval;
+    }
+
+    @Override
+    @Deprecated
+    public javax.servlet.http.HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        load();
+        checkValid();
+        return attributes.get(name);
+    }
+
+    @Override
+    @Deprecated
+    public Object getValue(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        load();
+        checkValid();
+        return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+    }
+
+    @Override
+    @Deprecated
+    public String[] getValueNames() {
+        load();
+        checkValid();
+        return attributes.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        load();
+        checkValid();
+        if (value == null) {
+            attributes.remove(name);
+        } else if (value instanceof Serializable) {
+            attributes.put(name, value);
+        } else {
+            throw new IllegalArgumentException("session attribute '" + name + "' is not serializable");
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void putValue(String name, Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        load();
+        checkValid();
+        attributes.remove(name);
+    }
+
+    @Override
+    @Deprecated
+    public void removeValue(String name) {
+        removeAttribute(name);
+    }
+
+    /**
+     * Deletes the session cookie in the browser. Copies of the cookie stay valid until they expire, see
+     * class description.
+     */
+    @Override
+    public void invalidate() {
+        load();
+        checkValid();
+        attributes.clear();
+        invalid = true;
+    }
+
+    @Override
+    public boolean isNew() {
+        load();
+        checkValid();
+        return isNew;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Request with a session kept in a cookie rather than by the container, see {@link CookieSession}.
+ *
+ * @author Igor Polevoy
+ */
+class CookieSessionRequest extends HttpServletRequestWrapper {
+
+    private final CookieSessionStore store;
+    private CookieSession session;
+
+    CookieSessionRequest(HttpServletRequest request, CookieSessionStore store) {
+        super(request);
+        this.store = store;
+    }
+
+    @Override
+    public HttpSession getSession(boolean create) {
+        if (session == null) {
+            String cookieValue = cookieValue();
+            if (cookieValue == null && !create) {
+                return null;
+            }
+            session = new CookieSession(this, store, cookieValue);
+        } else if (!session.isValid()) {
+            if (!create) {
+                return null;
+            }
+            session.renew();
+        }
+        return session;
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return getSession(true);
+    }
+
+    @Override
+    public String changeSessionId() {
+        if (getSession(false) == null) {
+            throw new IllegalStateException("request has no session");
+        }
+        session.changeId();
+        return session.getId();
+    }
+
+    @Override
+    public String getRequestedSessionId() {
+        return null;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+        return false;
+    }
+
+    /**
+     * Adds session cookie to response if the session was changed.
+     */
+    void saveSession(HttpServletResponse response) {
+        if (session != null) {
+            session.save(response);
+        }
+    }
+
+    boolean sessionChanged() {
+        return session != null && session.changed();
+    }
+
+    private String cookieValue() {
+        Cookie[] cookies = getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (CookieSessionStore.COOKIE_NAME.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}
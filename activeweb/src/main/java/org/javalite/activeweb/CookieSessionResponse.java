@@ -0,0 +1,206 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Response that writes the session cookie of {@link CookieSessionRequest} before the response is committed.
+ * Output is buffered up to {@link #MAX_BUFFER} bytes, so that changes made to the session while a page renders,
+ * such as CSRF tokens generated by forms, are saved. Flushing of writer or output stream does not send buffered
+ * output, so layouts are not streamed early. The session is saved earlier if output exceeds the buffer or
+ * {@link #flushBuffer()} is called, and changes made after that are lost.
+ *
+ * @author Igor Polevoy
+ */
+class CookieSessionResponse extends HttpServletResponseWrapper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CookieSessionResponse.class);
+
+    static final int MAX_BUFFER = 1024 * 1024;
+
+    private final CookieSessionRequest request;
+    private BufferedOutputStream stream;
+    private PrintWriter writer;
+    private boolean sessionSaved;
+
+    CookieSessionResponse(HttpServletResponse response, CookieSessionRequest request) {
+        super(response);
+        this.request = request;
+    }
+
+    private void saveSession() {
+        if (!sessionSaved) {
+            sessionSaved = true;
+            request.saveSession((HttpServletResponse) getResponse());
+        }
+    }
+
+    /**
+     * Saves session and sends buffered output. Call at the end of request.
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (sessionSaved) {
+            if (request.sessionChanged()) {
+                LOGGER.warn("Session was changed after response was committed, changes are lost");
+            }
+        } else {
+            saveSession();
+        }
+        if (stream != null) {
+            stream.commit();
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called for this response");
+        }
+        if (stream == null) {
+            stream = new BufferedOutputStream();
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called for this response");
+            }
+            stream = new BufferedOutputStream();
+            writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.commit();
+        }
+        saveSession();
+        super.flushBuffer();
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return super.isCommitted() || stream != null && stream.buffer == null;
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (stream != null && stream.buffer != null) {
+            stream.buffer.reset();
+        }
+        super.resetBuffer();
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        super.reset();
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        saveSession();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        saveSession();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        saveSession();
+        super.sendRedirect(location);
+    }
+
+    private class BufferedOutputStream extends ServletOutputStream {
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+
+        @Override
+        public void write(int b) throws IOException {
+            if (buffer != null) {
+                buffer.write(b);
+                if (buffer.size() > MAX_BUFFER) {
+                    commit();
+                }
+            } else {
+                getResponse().getOutputStream().write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (buffer != null && buffer.size() + len <= MAX_BUFFER) {
+                buffer.write(b, off, len);
+            } else {
+                commit();
+                getResponse().getOutputStream().write(b, off, len);
+            }
+        }
+
+        /**
+         * Only flushes output that is not buffered, as templates flush their writers when done.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (buffer == null) {
+                getResponse().getOutputStream().flush();
+            }
+        }
+
+        void commit() throws IOException {
+            saveSession();
+            if (buffer != null) {
+                buffer.writeTo(getResponse().getOutputStream());
+                buffer = null;
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
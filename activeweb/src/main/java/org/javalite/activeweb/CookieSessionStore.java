@@ -0,0 +1,195 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Seals session data into values of cookies: the data is compressed, then encrypted and authenticated with AES-GCM.
+ * The first key encrypts, and all keys decrypt, so that a new key can be put first while cookies encrypted with
+ * older keys are still accepted. See property <code>sessionStore</code>.
+ *
+ * @author Igor Polevoy
+ */
+class CookieSessionStore {
+
+    static final String COOKIE_NAME = "aw_session";
+    static final int DEFAULT_MAX_INACTIVE_INTERVAL = 1800;
+
+    private static final int IV_BYTES = 12, TAG_BITS = 128;
+    private static final byte[] AAD = COOKIE_NAME.getBytes(StandardCharsets.US_ASCII);
+
+    private final SecretKeySpec[] keys;
+    private final byte[] keyIds;
+    private final int maxSize;
+    private final String[] sessionClasses;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * @param keys AES keys of 16, 24 or 32 bytes, the first one encrypts.
+     * @param maxSize maximum length of a cookie value.
+     */
+    CookieSessionStore(byte[][] keys, int maxSize) {
+        this(keys, maxSize, new String[0]);
+    }
+
+    /**
+     * @param keys AES keys of 16, 24 or 32 bytes, the first one encrypts.
+     * @param maxSize maximum length of a cookie value.
+     * @param sessionClasses classes allowed in session in addition to default ones, see
+     *                       {@link SessionObjectInputStream}.
+     */
+    CookieSessionStore(byte[][] keys, int maxSize, String[] sessionClasses) {
+        if (keys.length == 0) {
+            throw new InitException("property sessionCookieKeys must have a key when property sessionStore is 'cookie'");
+        }
+        this.keys = new SecretKeySpec[keys.length];
+        this.keyIds = new byte[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].length != 16 && keys[i].length != 24 && keys[i].length != 32) {
+                throw new InitException("key " + (i + 1) + " of property sessionCookieKeys must have 16, 24 or 32 bytes");
+            }
+            this.keys[i] = new SecretKeySpec(keys[i], "AES");
+            this.keyIds[i] = keyId(keys[i]);
+        }
+        this.maxSize = maxSize;
+        this.sessionClasses = sessionClasses;
+    }
+
+    /**
+     * Identifies a key in a cookie, so that the cookie is decrypted with the right key after keys are rotated.
+     */
+    private static byte keyId(byte[] key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key)[0];
+        } catch (GeneralSecurityException e) {
+            throw new InitException(e);
+        }
+    }
+
+    String[] getSessionClasses() {
+        return sessionClasses;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    String newId() {
+        byte[] id = new byte[16];
+        random.nextBytes(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id);
+    }
+
+    /**
+     * @param data serialized session.
+     * @return value of a cookie, which may be longer than {@link #getMaxSize()}.
+     */
+    String seal(byte[] data) {
+        try {
+            byte[] iv = new byte[IV_BYTES];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, keys[0], new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(AAD);
+            byte[] compressed = deflate(data);
+            byte[] sealed = new byte[1 + IV_BYTES + cipher.getOutputSize(compressed.length)];
+            sealed[0] = keyIds[0];
+            System.arraycopy(iv, 0, sealed, 1, IV_BYTES);
+            cipher.doFinal(compressed, 0, compressed.length, sealed, 1 + IV_BYTES);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(sealed);
+        } catch (GeneralSecurityException e) {
+            throw new WebException(e);
+        }
+    }
+
+    /**
+     * @param value value of a cookie.
+     * @return serialized session, or null if the value was not sealed by one of the keys, or was tampered with.
+     */
+    byte[] unseal(String value) {
+        if (value.length() > maxSize) {
+            return null;
+        }
+        try {
+            byte[] sealed = Base64.getUrlDecoder().decode(value);
+            if (sealed.length < 1 + IV_BYTES) {
+                return null;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keyIds[i] == sealed[0]) {
+                    Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                    cipher.init(Cipher.DECRYPT_MODE, keys[i], new GCMParameterSpec(TAG_BITS, sealed, 1, IV_BYTES));
+                    cipher.updateAAD(AAD);
+                    try {
+                        return inflate(cipher.doFinal(sealed, 1 + IV_BYTES, sealed.length - 1 - IV_BYTES));
+                    } catch (GeneralSecurityException e) {
+                        // keys with the same ID, try next one
+                    }
+                }
+            }
+            return null;
+        } catch (IllegalArgumentException | GeneralSecurityException | DataFormatException e) {
+            return null;
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("truncated session data");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writer that encodes text into an output stream, reusing bytes of static text of templates.
+ * <p></p>
+ * FreeMarker writes a static block of a template as the same <code>char[]</code> instance every time the template
+ * is rendered. Bytes of such arrays are cached by identity of the array, so that static text is encoded once,
+ * and only dynamic text is encoded per request. Contents are not compared, so an array written whole must not be
+ * changed and written whole again; parts of arrays, as written by buffered copying, are always encoded.
+ * The cache is read without locks and does not keep arrays from being collected.
+ *
+ * @author Igor Polevoy
+ */
+class EncodedTextWriter extends Writer {
+
+    private static final int MIN_CACHED_LENGTH = 64;
+    private static final Map<Charset, EncodedTexts> cache = new ConcurrentHashMap<>();
+
+    private final OutputStream out;
+    private final Charset charset;
+    private final EncodedTexts encodedTexts;
+    private char highSurrogate;
+
+    EncodedTextWriter(OutputStream out, Charset charset) {
+        this.out = out;
+        this.charset = charset;
+        EncodedTexts encodedTexts = cache.get(charset);
+        this.encodedTexts = encodedTexts != null ? encodedTexts : cache.computeIfAbsent(charset, c -> new EncodedTexts());
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if (off != 0 || len != cbuf.length || len < MIN_CACHED_LENGTH || highSurrogate != 0) {
+            encode(new String(cbuf, off, len));
+            return;
+        }
+        byte[] bytes = encodedTexts.get(cbuf);
+        if (bytes == null) {
+            bytes = new String(cbuf).getBytes(charset);
+            encodedTexts.put(cbuf, bytes);
+        }
+        out.write(bytes);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        encode(off == 0 && len == str.length() ? str : str.substring(off, off + len));
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        encode(String.valueOf((char) c));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (highSurrogate != 0) {
+            out.write(String.valueOf(highSurrogate).getBytes(charset));
+            highSurrogate = 0;
+        }
+        out.close();
+    }
+
+    /**
+     * Encodes dynamic text, holding back a trailing high surrogate until its pair arrives with the next write.
+     */
+    private void encode(String text) throws IOException {
+        if (highSurrogate != 0) {
+            text = highSurrogate + text;
+            highSurrogate = 0;
+        }
+        if (!text.isEmpty() && Character.isHighSurrogate(text.charAt(text.length() - 1))) {
+            highSurrogate = text.charAt(text.length() - 1);
+            text = text.substring(0, text.length() - 1);
+        }
+        out.write(text.getBytes(charset));
+    }
+
+    /**
+     * Encoded texts of one charset, keyed by identity of arrays, which are referenced weakly.
+     */
+    private static class EncodedTexts {
+        private final Map<Key, byte[]> texts = new ConcurrentHashMap<>();
+        private final ReferenceQueue<char[]> collected = new ReferenceQueue<>();
+
+        byte[] get(char[] chars) {
+            return texts.get(new Key(chars, null));
+        }
+
+        void put(char[] chars, byte[] text) {
+            Reference<? extends char[]> key;
+            while ((key = collected.poll()) != null) {
+                texts.remove(key);
+            }
+            texts.put(new Key(chars, collected), text);
+        }
+    }
+
+    private static class Key extends WeakReference<char[]> {
+        private final int hash;
+
+        Key(char[] chars, ReferenceQueue<char[]> queue) {
+            super(chars, queue);
+            hash = System.identityHashCode(chars);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            char[] chars = get();
+            return chars != null && o instanceof Key && ((Key) o).get() == chars;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import org.javalite.activeweb.annotations.*;
 
 import javax.servlet.http.HttpServletRequest;
 import java.lang.annotation.Annotation;
+import java.util.Locale;
 
 /**
  * @author Igor Polevoy
@@ -26,6 +27,9 @@ import java.lang.annotation.Annotation;
 public enum HttpMethod {
     GET, POST, PUT, DELETE, PATCH, HEAD, OPTIONS;
 
+    private static final String METHOD_ATTRIBUTE = HttpMethod.class.getName();
+    private static final String METHOD_PARAM = "_method";
+
     /**
      * Detects a method from annotation
      *
@@ -53,14 +57,60 @@ public enum HttpMethod {
     }
 
     /**
-     * Detects an HTTP method from a request.
+     * Detects an HTTP method from a request. A POST request can be sent as PUT or DELETE by parameter
+     * <code>_method</code>, or as PATCH by header <code>X-HTTP-Method-Override</code>. The header and query string are
+     * checked first. The body is only looked at for form-encoded requests, so that the container does not parse
+     * other request bodies as parameters. The method of a POST request is detected once.
      */
     static HttpMethod getMethod(HttpServletRequest request){
-        String methodParam = request.getParameter("_method");
         String requestMethod = request.getMethod();
-        requestMethod = requestMethod.equalsIgnoreCase("POST") && methodParam != null && methodParam.equalsIgnoreCase("DELETE")? "DELETE" : requestMethod;
-        requestMethod = requestMethod.equalsIgnoreCase("POST") && methodParam != null && methodParam.equalsIgnoreCase("PUT")? "PUT" : requestMethod;
-        requestMethod = requestMethod.equalsIgnoreCase("POST") && request.getHeader("X-HTTP-Method-Override") != null && request.getHeader("X-HTTP-Method-Override").equalsIgnoreCase("PATCH") ? "PATCH" : requestMethod;
-        return HttpMethod.valueOf(requestMethod.toUpperCase());
+        if (!requestMethod.equalsIgnoreCase("POST")) {
+            return HttpMethod.valueOf(requestMethod.toUpperCase());
+        }
+        HttpMethod method = (HttpMethod) request.getAttribute(METHOD_ATTRIBUTE);
+        if (method == null) {
+            method = overriddenMethod(request);
+            request.setAttribute(METHOD_ATTRIBUTE, method);
+        }
+        return method;
+    }
+
+    private static HttpMethod overriddenMethod(HttpServletRequest request) {
+        if ("PATCH".equalsIgnoreCase(request.getHeader("X-HTTP-Method-Override"))) {
+            return PATCH;
+        }
+        String methodParam = queryParam(request.getQueryString());
+        if (methodParam == null && isFormEncoded(request.getContentType())) {
+            methodParam = request.getParameter(METHOD_PARAM);
+        }
+        if ("DELETE".equalsIgnoreCase(methodParam)) {
+            return DELETE;
+        } else if ("PUT".equalsIgnoreCase(methodParam)) {
+            return PUT;
+        }
+        return POST;
+    }
+
+    private static String queryParam(String queryString) {
+        if (queryString == null) {
+            return null;
+        }
+        String prefix = METHOD_PARAM + "=";
+        int start;
+        if (queryString.startsWith(prefix)) {
+            start = prefix.length();
+        } else {
+            start = queryString.indexOf("&" + prefix);
+            if (start == -1) {
+                return null;
+            }
+            start += prefix.length() + 1;
+        }
+        int end = queryString.indexOf('&', start);
+        return queryString.substring(start, end == -1 ? queryString.length() : end);
+    }
+
+    private static boolean isFormEncoded(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ENGLISH).startsWith("application/x-www-form-urlencoded");
     }
 }
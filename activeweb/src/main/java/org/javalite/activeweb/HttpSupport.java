@@ -136,7 +136,6 @@ public class HttpSupport {
      * @param values values to flash.
      */
     protected void flash(Map values){
-        checkFlasher();
         for(Object key:values.keySet() ){
             flash(key.toString(), values.get(key));
         }
@@ -183,6 +182,10 @@ public class HttpSupport {
      */
     @SuppressWarnings("unchecked")
     protected void flash(String name, Object value) {
+        if (CookieFlash.enabled()) {
+            CookieFlash.get().put(name, value);
+            return;
+        }
         checkFlasher();
         ((Map) session().get("flasher")).put(name, value);
     }
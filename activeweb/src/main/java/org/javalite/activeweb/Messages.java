@@ -1,9 +1,16 @@
 package org.javalite.activeweb;
 
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.Format;
 import java.text.MessageFormat;
 import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class is used to pull messages from a resource bundle called <code>activeweb_messages</code>.
@@ -14,7 +21,11 @@ import java.util.ResourceBundle;
 
 public class Messages {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Messages.class);
     private static final String BUNDLE = "activeweb_messages";
+
+    // compiled messages by locale of bundle and key, bundles are not expected to change while application runs
+    private static final Map<Locale, Map<String, MessageFormat>> formats = new ConcurrentHashMap<>();
     
     private Messages() {}
 
@@ -44,17 +55,85 @@ public class Messages {
         return getMessage(key, RequestContext.getHttpRequest().getLocale(), params);
     }
 
-    private static String getMessage(String key, Locale locale, Object... params){
-        MessageFormat mf = new MessageFormat("");
-        try{
-            if(locale == null){
-                mf.applyPattern(ResourceBundle.getBundle(BUNDLE).getString(key));
-            }else{
-                mf.applyPattern(ResourceBundle.getBundle(BUNDLE, locale).getString(key));
+    /**
+     * Loads bundles of provided locales and compiles all their messages, so that first requests
+     * do not pay for it. Called at start of application with locales from property <code>locales</code>.
+     *
+     * @param locales locales to load bundles for.
+     */
+    public static void preload(Locale... locales) {
+        for (Locale locale : locales) {
+            try {
+                ResourceBundle bundle = ResourceBundle.getBundle(BUNDLE, locale);
+                for (String key : bundle.keySet()) {
+                    getFormat(key, locale);
+                }
+            } catch (MissingResourceException e) {
+                LOGGER.warn("Bundle " + BUNDLE + " not found for locale " + locale);
             }
-        }catch(Exception e){
-            mf.applyPattern(key);
+        }
+    }
+
+    private static String getMessage(String key, Locale locale, Object... params){
+        MessageFormat mf = getFormat(key, locale == null ? Locale.getDefault() : locale);
+        if (!plain(mf)) {
+            mf = (MessageFormat) mf.clone(); // formats of arguments are not thread safe
         }
         return mf.format(params);
     }
-}
\ No newline at end of file
+
+    /**
+     * @return true if message has no formats of arguments, such as <code>{0,number,#.#}</code>.
+     * Arguments without formats are formatted with new instances of formats and such message is thread safe.
+     */
+    private static boolean plain(MessageFormat mf) {
+        for (Format format : mf.getFormats()) {
+            if (format != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of compiled messages in cache.
+     */
+    static int cachedFormats() {
+        int count = 0;
+        for (Map<String, MessageFormat> localeFormats : formats.values()) {
+            count += localeFormats.size();
+        }
+        return count;
+    }
+
+    /**
+     * Formats are cached by locale of the bundle that was found, rather than by requested locale, because clients
+     * can request any locale. Keys missing from bundle are not cached for the same reason.
+     */
+    private static MessageFormat getFormat(String key, Locale locale) {
+        ResourceBundle bundle;
+        try {
+            bundle = ResourceBundle.getBundle(BUNDLE, locale);
+        } catch (MissingResourceException e) {
+            return new MessageFormat(key);
+        }
+        Map<String, MessageFormat> localeFormats = formats.get(bundle.getLocale());
+        if (localeFormats == null) {
+            localeFormats = formats.computeIfAbsent(bundle.getLocale(), l -> new ConcurrentHashMap<>());
+        }
+        MessageFormat mf = localeFormats.get(key);
+        if (mf == null) {
+            if (!bundle.containsKey(key)) {
+                return new MessageFormat(key);
+            }
+            mf = new MessageFormat("");
+            try{
+                mf.applyPattern(bundle.getString(key));
+            }catch(Exception e){
+                mf.applyPattern(key);
+            }
+            localeFormats.put(key, mf);
+        }
+        return mf;
+    }
+}
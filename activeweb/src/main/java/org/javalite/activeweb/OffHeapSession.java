@@ -0,0 +1,327 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.io.*;
+import java.util.*;
+
+/**
+ * Session kept in {@link OffHeapSessionStore}. Attributes are deserialized one at a time when they are read,
+ * and the session is stored back at the end of request if it changed, including changes of objects inside
+ * the session.
+ * <p></p>
+ * Only attributes changed or removed by the request are written back. If another request stored the same session
+ * in the meantime, these changes are applied on top of the session as that request left it, so that concurrent
+ * requests do not lose each other's attributes. A session invalidated by another request is not stored again.
+ *
+ * @author Igor Polevoy
+ */
+class OffHeapSession implements HttpSession {
+
+    private final HttpServletRequest request;
+    private final OffHeapSessionStore store;
+    private final String id;
+    private final long creationTime, lastAccessedTime;
+    private final boolean isNew;
+    private int maxInactiveInterval;
+    private boolean invalid, intervalChanged;
+
+    /** Serialized session as it was read, and its version in store. */
+    private byte[] data;
+    private long version;
+    /** Offsets of serialized attributes in data, as [offset, length]. */
+    private Map<String, int[]> stored;
+    /** Attributes read or written during current request. */
+    private final Map<String, Object> values = new HashMap<>();
+    /** Serialized attributes as they were read, to detect changes of objects. */
+    private final Map<String, byte[]> originals = new HashMap<>();
+    /** Attributes removed during current request. */
+    private final Set<String> removed = new HashSet<>();
+
+    /**
+     * Creates a new session.
+     */
+    OffHeapSession(HttpServletRequest request, OffHeapSessionStore store, String id, int maxInactiveInterval) {
+        this.request = request;
+        this.store = store;
+        this.id = id;
+        this.creationTime = this.lastAccessedTime = System.currentTimeMillis();
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.isNew = true;
+        this.intervalChanged = true;
+        this.data = new byte[0];
+        this.stored = new LinkedHashMap<>();
+    }
+
+    /**
+     * Opens a stored session.
+     */
+    OffHeapSession(HttpServletRequest request, OffHeapSessionStore store, String id, OffHeapSessionStore.StoredSession session) {
+        this.request = request;
+        this.store = store;
+        this.id = id;
+        this.creationTime = session.creationTime;
+        this.lastAccessedTime = session.lastAccessedTime;
+        this.maxInactiveInterval = session.maxInactiveInterval;
+        this.isNew = false;
+        this.data = session.data;
+        this.version = session.version;
+        this.stored = readIndex(id, data);
+    }
+
+    /**
+     * Reads names and positions of attributes. Format of data is a number of attributes, followed by name,
+     * length and bytes of each attribute.
+     */
+    private static Map<String, int[]> readIndex(String id, byte[] data) {
+        Map<String, int[]> index = new LinkedHashMap<>();
+        if (data.length == 0) {
+            return index;
+        }
+        try {
+            ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+            DataInputStream in = new DataInputStream(bytes);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                int length = in.readInt();
+                index.put(name, new int[]{data.length - bytes.available(), length});
+                in.skipBytes(length);
+            }
+        } catch (IOException e) {
+            throw new WebException("Failed to read session " + id, e);
+        }
+        return index;
+    }
+
+    private static byte[] storedBytes(byte[] data, int[] slot) {
+        return Arrays.copyOfRange(data, slot[0], slot[0] + slot[1]);
+    }
+
+    private static byte[] serialize(String name, Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new WebException("Failed to serialize session attribute '" + name + "'", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(String name, byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new WebException("Failed to deserialize session attribute '" + name + "'", e);
+        }
+    }
+
+    boolean isValid() {
+        return !invalid;
+    }
+
+    /**
+     * Stores the session if it changed. If the session was stored by another request after it was read,
+     * changes of this request are applied to the session read again.
+     */
+    void save() {
+        if (invalid) {
+            return;
+        }
+        Map<String, byte[]> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            byte[] bytes = serialize(entry.getKey(), entry.getValue());
+            if (!Arrays.equals(bytes, originals.get(entry.getKey()))) {
+                changed.put(entry.getKey(), bytes);
+            }
+        }
+        if (changed.isEmpty() && removed.isEmpty() && !intervalChanged) {
+            return;
+        }
+        while (!store.put(id, version, creationTime, maxInactiveInterval, write(changed))) {
+            OffHeapSessionStore.StoredSession latest = store.get(id);
+            if (latest == null) { // evicted meanwhile, store with attributes as this request read them
+                version = 0;
+            } else {
+                data = latest.data;
+                version = latest.version;
+                stored = readIndex(id, data);
+                if (!intervalChanged) {
+                    maxInactiveInterval = latest.maxInactiveInterval;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return serialized attributes of data, with changed and removed attributes of this request applied.
+     */
+    private byte[] write(Map<String, byte[]> changed) {
+        Set<String> names = new LinkedHashSet<>(stored.keySet());
+        names.addAll(changed.keySet());
+        names.removeAll(removed);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(names.size());
+            for (String name : names) {
+                byte[] value = changed.containsKey(name) ? changed.get(name) : storedBytes(data, stored.get(name));
+                out.writeUTF(name);
+                out.writeInt(value.length);
+                out.write(value);
+            }
+        } catch (IOException e) {
+            throw new WebException("Failed to write session " + id, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private Set<String> names() {
+        Set<String> names = new LinkedHashSet<>(stored.keySet());
+        names.addAll(values.keySet());
+        names.removeAll(removed);
+        return names;
+    }
+
+    private void checkValid() {
+        if (invalid) {
+            throw new IllegalStateException("session was invalidated");
+        }
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return lastAccessedTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return request.getServletContext();
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        maxInactiveInterval = interval;
+        intervalChanged = true;
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    @Override
+    @Deprecated
+    public javax.servlet.http.HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        checkValid();
+        if (values.containsKey(name)) {
+            return values.get(name);
+        }
+        int[] slot = stored.get(name);
+        if (slot == null || removed.contains(name)) {
+            return null;
+        }
+        byte[] bytes = storedBytes(data, slot);
+        Object value = deserialize(name, bytes);
+        values.put(name, value);
+        originals.put(name, bytes);
+        return value;
+    }
+
+    @Override
+    @Deprecated
+    public Object getValue(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        return Collections.enumeration(names());
+    }
+
+    @Override
+    @Deprecated
+    public String[] getValueNames() {
+        checkValid();
+        return names().toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        checkValid();
+        if (value == null) {
+            removeAttribute(name);
+        } else if (value instanceof Serializable) {
+            values.put(name, value);
+            removed.remove(name);
+        } else {
+            throw new IllegalArgumentException("session attribute '" + name + "' is not serializable");
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void putValue(String name, Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        checkValid();
+        if (values.remove(name) != null | stored.containsKey(name)) {
+            removed.add(name);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void removeValue(String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        invalid = true;
+        store.remove(id);
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+}
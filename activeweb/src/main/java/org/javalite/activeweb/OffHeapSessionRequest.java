@@ -0,0 +1,132 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.util.Collections;
+
+import static org.javalite.common.Util.blank;
+
+/**
+ * Request with a session kept in {@link OffHeapSessionStore} rather than by the container. ID of the session is
+ * sent to client in cookie {@link OffHeapSessionStore#COOKIE_NAME} when the session is created.
+ *
+ * @author Igor Polevoy
+ */
+class OffHeapSessionRequest extends HttpServletRequestWrapper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapSessionRequest.class);
+    static final int DEFAULT_MAX_INACTIVE_INTERVAL = 1800;
+
+    private final HttpServletResponse response;
+    private final OffHeapSessionStore store;
+    private OffHeapSession session;
+    private boolean looked;
+
+    OffHeapSessionRequest(HttpServletRequest request, HttpServletResponse response, OffHeapSessionStore store) {
+        super(request);
+        this.response = response;
+        this.store = store;
+    }
+
+    @Override
+    public HttpSession getSession(boolean create) {
+        if (!looked) {
+            looked = true;
+            String id = getRequestedSessionId();
+            OffHeapSessionStore.StoredSession stored = id == null ? null : store.get(id);
+            if (stored != null) {
+                session = new OffHeapSession(this, store, id, stored);
+            }
+        }
+        if (session == null || !session.isValid()) {
+            if (!create) {
+                return null;
+            }
+            session = new OffHeapSession(this, store, store.newId(), DEFAULT_MAX_INACTIVE_INTERVAL);
+            sendId();
+        }
+        return session;
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return getSession(true);
+    }
+
+    @Override
+    public String changeSessionId() {
+        HttpSession old = getSession(false);
+        if (old == null) {
+            throw new IllegalStateException("request has no session");
+        }
+        OffHeapSession renewed = new OffHeapSession(this, store, store.newId(), old.getMaxInactiveInterval());
+        for (String name : Collections.list(old.getAttributeNames())) {
+            renewed.setAttribute(name, old.getAttribute(name));
+        }
+        old.invalidate();
+        session = renewed;
+        sendId();
+        return session.getId();
+    }
+
+    @Override
+    public String getRequestedSessionId() {
+        Cookie[] cookies = getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (OffHeapSessionStore.COOKIE_NAME.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+        String id = getRequestedSessionId();
+        return id != null && store.get(id) != null;
+    }
+
+    /**
+     * Stores session if it was changed. Call at the end of request.
+     */
+    void saveSession() {
+        if (session != null) {
+            session.save();
+        }
+    }
+
+    private void sendId() {
+        if (response.isCommitted()) {
+            LOGGER.warn("Session created after response was committed, client will not get it");
+            return;
+        }
+        Cookie cookie = new Cookie(OffHeapSessionStore.COOKIE_NAME, session.getId());
+        cookie.setPath(blank(getContextPath()) ? "/" : getContextPath());
+        cookie.setHttpOnly(true);
+        cookie.setSecure(isSecure());
+        response.addCookie(cookie);
+    }
+}
@@ -0,0 +1,346 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps serialized sessions in direct memory outside of Java heap, so that many idle sessions do not fill the
+ * old generation. Only a small record per session stays on heap. Total size of sessions is limited, see property
+ * <code>offHeapSessionsMaxSize</code>. When the limit is reached, least recently used sessions are evicted. Sessions
+ * idle for longer than their max inactive interval are evicted when found, or when they become least recently used.
+ * <p></p>
+ * Direct memory is allocated in large slabs as the store grows, and is never released. Sessions occupy fixed size
+ * blocks of the slabs, which are reused when a session is replaced or evicted, so that storing a session neither
+ * allocates direct memory nor leaves buffers for the garbage collector.
+ * <p></p>
+ * The store is split into stripes by session ID, each with an equal share of the size, its own least recently used
+ * order and its own lock, so that requests of different sessions rarely wait for each other.
+ * <p></p>
+ * Every stored session has a version. A session is stored back only if it was not stored by another request since
+ * it was read, see {@link #put(String, long, long, int, byte[])}. IDs of invalidated sessions are remembered for
+ * their max inactive interval, so that a request that was running during logout cannot store the session again.
+ *
+ * @author Igor Polevoy
+ */
+class OffHeapSessionStore {
+
+    static final String COOKIE_NAME = "AWSESSIONID";
+
+    static final int BLOCK_SIZE = 256;
+    private static final int SLAB_SIZE = 16 * 1024 * 1024;
+    private static final long DEFAULT_TOMBSTONE_MILLIS = 1800 * 1000L;
+    private static final int MAX_STRIPES = 16;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Stripe[] stripes;
+
+    /**
+     * Session as read from store. Data is a copy that belongs to the caller.
+     */
+    static class StoredSession {
+        final long creationTime;
+        final int maxInactiveInterval;
+        final long lastAccessedTime;
+        final long version;
+        final byte[] data;
+
+        StoredSession(long creationTime, int maxInactiveInterval, long lastAccessedTime, long version, byte[] data) {
+            this.creationTime = creationTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+            this.lastAccessedTime = lastAccessedTime;
+            this.version = version;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Session as kept in store: a record on heap, and data in blocks of slabs.
+     */
+    private static class Entry {
+        final long creationTime;
+        final int maxInactiveInterval;
+        final long version;
+        final int length;
+        final int[] blocks;
+        long lastAccessedTime;
+
+        Entry(long creationTime, int maxInactiveInterval, long version, int length, int[] blocks) {
+            this.creationTime = creationTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+            this.version = version;
+            this.length = length;
+            this.blocks = blocks;
+        }
+
+        private boolean expired(long now) {
+            return maxInactiveInterval > 0 && now - lastAccessedTime > maxInactiveInterval * 1000L;
+        }
+    }
+
+    /**
+     * @param maxSize maximum total size of serialized sessions in bytes.
+     */
+    OffHeapSessionStore(long maxSize) {
+        this(maxSize, (int) Math.max(1, Math.min(MAX_STRIPES, maxSize / SLAB_SIZE)));
+    }
+
+    /**
+     * @param maxSize maximum total size of serialized sessions in bytes.
+     * @param stripeCount number of parts of the store, each with an equal share of size.
+     */
+    OffHeapSessionStore(long maxSize, int stripeCount) {
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(maxSize / stripeCount);
+        }
+    }
+
+    String newId() {
+        byte[] id = new byte[18];
+        random.nextBytes(id);
+        return Base64.getUrlEncoder().encodeToString(id);
+    }
+
+    /**
+     * @param id ID of a session.
+     * @return copy of session, or null if not found or expired.
+     */
+    StoredSession get(String id) {
+        return stripe(id).get(id);
+    }
+
+    /**
+     * Stores a session, replacing a session with the same ID, unless the session was stored by someone else after
+     * it was read. A session larger than a stripe of the store is not stored. A session that was removed is not
+     * stored again.
+     *
+     * @param expectedVersion version of session as it was read, 0 for a session that is not in store.
+     * @param data serialized session.
+     * @return true if the session was stored, or was discarded because it was removed or is too large; false if
+     * the session in store has a different version. The caller should then read the session again, apply
+     * its changes and retry.
+     */
+    boolean put(String id, long expectedVersion, long creationTime, int maxInactiveInterval, byte[] data) {
+        return stripe(id).put(id, expectedVersion, creationTime, maxInactiveInterval, data);
+    }
+
+    /**
+     * Removes a session and prevents it from being stored again.
+     */
+    void remove(String id) {
+        stripe(id).remove(id);
+    }
+
+    int count() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.count();
+        }
+        return count;
+    }
+
+    /**
+     * @return bytes of direct memory occupied by sessions.
+     */
+    long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private Stripe stripe(String id) {
+        return stripes[Math.floorMod(id.hashCode(), stripes.length)];
+    }
+
+    /**
+     * Part of the store holding sessions of some IDs, with its own memory, LRU order and lock.
+     */
+    private static class Stripe {
+        private final Map<String, Entry> sessions = new LinkedHashMap<>(16, 0.75f, true);
+        private final Map<String, Long> tombstones = new LinkedHashMap<>();
+        private final int totalBlocks, slabBlocks;
+        private final ByteBuffer[] slabs;
+        private int allocatedBlocks;
+        private int[] freeBlocks = new int[64];
+        private int freeCount;
+        private int usedBlocks;
+        private long lastVersion;
+
+        Stripe(long maxSize) {
+            totalBlocks = (int) Math.min(maxSize / BLOCK_SIZE, Integer.MAX_VALUE);
+            slabBlocks = Math.max(1, Math.min(totalBlocks, SLAB_SIZE / BLOCK_SIZE));
+            slabs = new ByteBuffer[(totalBlocks + slabBlocks - 1) / slabBlocks];
+        }
+
+        synchronized StoredSession get(String id) {
+            Entry entry = sessions.get(id);
+            if (entry == null) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            if (entry.expired(now)) {
+                evict(id);
+                return null;
+            }
+            StoredSession session = new StoredSession(entry.creationTime, entry.maxInactiveInterval,
+                    entry.lastAccessedTime, entry.version, read(entry));
+            entry.lastAccessedTime = now;
+            return session;
+        }
+
+        synchronized boolean put(String id, long expectedVersion, long creationTime, int maxInactiveInterval, byte[] data) {
+            long now = System.currentTimeMillis();
+            purgeTombstones(now);
+            if (tombstones.containsKey(id)) {
+                return true;
+            }
+            Entry current = sessions.get(id);
+            if ((current == null ? 0 : current.version) != expectedVersion) {
+                return false;
+            }
+            evict(id);
+            int blockCount = (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            if (blockCount > totalBlocks) {
+                return true;
+            }
+            int[] blocks = allocate(blockCount, now);
+            write(blocks, data);
+            Entry entry = new Entry(creationTime, maxInactiveInterval, ++lastVersion, data.length, blocks);
+            entry.lastAccessedTime = now;
+            sessions.put(id, entry);
+            return true;
+        }
+
+        synchronized void remove(String id) {
+            Entry entry = sessions.get(id);
+            long millis = entry == null || entry.maxInactiveInterval <= 0 ? DEFAULT_TOMBSTONE_MILLIS
+                    : entry.maxInactiveInterval * 1000L;
+            evict(id);
+            tombstones.put(id, System.currentTimeMillis() + millis);
+        }
+
+        synchronized int count() {
+            return sessions.size();
+        }
+
+        synchronized long size() {
+            return (long) usedBlocks * BLOCK_SIZE;
+        }
+
+        private void evict(String id) {
+            Entry entry = sessions.remove(id);
+            if (entry != null) {
+                free(entry.blocks);
+            }
+        }
+
+        /**
+         * Takes free blocks, allocating slabs or evicting least recently used and expired sessions as needed.
+         */
+        private int[] allocate(int count, long now) {
+            Iterator<Entry> lru = sessions.values().iterator();
+            while (lru.hasNext()) {
+                Entry entry = lru.next();
+                if (freeCount >= count && !entry.expired(now)) {
+                    break;
+                }
+                if (freeCount < count && allocatedBlocks < totalBlocks) {
+                    allocateSlab();
+                    lru = sessions.values().iterator();
+                    continue;
+                }
+                lru.remove();
+                free(entry.blocks);
+            }
+            while (freeCount < count) {
+                allocateSlab();
+            }
+            int[] blocks = new int[count];
+            for (int i = 0; i < count; i++) {
+                blocks[i] = freeBlocks[--freeCount];
+            }
+            usedBlocks += count;
+            return blocks;
+        }
+
+        private void allocateSlab() {
+            int blocks = Math.min(slabBlocks, totalBlocks - allocatedBlocks);
+            slabs[allocatedBlocks / slabBlocks] = ByteBuffer.allocateDirect(blocks * BLOCK_SIZE);
+            int[] free = new int[blocks];
+            for (int i = 0; i < blocks; i++) {
+                free[i] = allocatedBlocks + blocks - 1 - i;
+            }
+            allocatedBlocks += blocks;
+            push(free);
+        }
+
+        private void free(int[] blocks) {
+            usedBlocks -= blocks.length;
+            push(blocks);
+        }
+
+        private void push(int[] blocks) {
+            if (freeCount + blocks.length > freeBlocks.length) {
+                int[] grown = new int[Math.max(freeBlocks.length * 2, freeCount + blocks.length)];
+                System.arraycopy(freeBlocks, 0, grown, 0, freeCount);
+                freeBlocks = grown;
+            }
+            System.arraycopy(blocks, 0, freeBlocks, freeCount, blocks.length);
+            freeCount += blocks.length;
+        }
+
+        private void write(int[] blocks, byte[] data) {
+            for (int i = 0; i < blocks.length; i++) {
+                int offset = i * BLOCK_SIZE;
+                slab(blocks[i]).put(data, offset, Math.min(BLOCK_SIZE, data.length - offset));
+            }
+        }
+
+        private byte[] read(Entry entry) {
+            byte[] data = new byte[entry.length];
+            for (int i = 0; i < entry.blocks.length; i++) {
+                int offset = i * BLOCK_SIZE;
+                slab(entry.blocks[i]).get(data, offset, Math.min(BLOCK_SIZE, data.length - offset));
+            }
+            return data;
+        }
+
+        /**
+         * @return slab of a block, positioned at the start of the block.
+         */
+        private ByteBuffer slab(int block) {
+            ByteBuffer slab = slabs[block / slabBlocks];
+            ((Buffer) slab).position((block % slabBlocks) * BLOCK_SIZE); // cast keeps Java 8 binary compatibility
+            return slab;
+        }
+
+        private void purgeTombstones(long now) {
+            Iterator<Long> expirations = tombstones.values().iterator();
+            while (expirations.hasNext() && expirations.next() < now) {
+                expirations.remove();
+            }
+        }
+    }
+}
@@ -57,7 +57,12 @@ class ParamCopy {
     private static void copySessionAttrsInto(Map assigns) {
 
         Map<String, Object> sessionAttrs = SessionHelper.getSessionAttributes();
-        if (sessionAttrs.containsKey("flasher")){ //flasher is special
+        if (CookieFlash.enabled()) {
+            Map<String, Object> flasher = CookieFlash.get().values();
+            if (flasher != null) {
+                assigns.put("flasher", flasher);
+            }
+        } else if (sessionAttrs.containsKey("flasher")){ //flasher is special
             assigns.put("flasher", sessionAttrs.get("flasher"));
         }
         assigns.put("session", sessionAttrs);
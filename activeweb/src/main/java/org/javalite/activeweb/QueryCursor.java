@@ -0,0 +1,169 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.javalite.activejdbc.Base;
+import org.javalite.activejdbc.DBException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Rows of a query, read from a JDBC result set one at a time while a view is rendered. Use it instead of
+ * a <code>LazyList</code> for large reports, so that rows are not loaded into memory all at once:
+ *
+ * <pre>
+ *     view("orders", new QueryCursor("SELECT * FROM orders WHERE year = ?", 2016));
+ * </pre>
+ *
+ * and in the view:
+ *
+ * <pre>
+ *     &lt;#list orders as order&gt;${order.id} ${order.total}&lt;/#list&gt;
+ * </pre>
+ *
+ * Each row is a map with lower case column names as keys. The query is executed on a connection of the
+ * default database when iteration begins, and the statement is closed when iteration ends. If a view stops
+ * before the last row, such as with <code>#break</code> or because of an error, the statement is closed at the end
+ * of request, before controller filters run. Outside of a request, call {@link #close()}. Every iteration
+ * executes the query again, and the size of the result is not known up front, so use <code>#list</code>
+ * rather than <code>?size</code> in views.
+ * <p></p>
+ * To keep memory constant, also set property <code>streamLayouts</code>, or render the view without a layout.
+ * Drivers only read rows in batches in certain modes: MySQL needs <code>fetchSize(Integer.MIN_VALUE)</code>,
+ * PostgreSQL needs a connection that is not in auto-commit mode.
+ *
+ * @author Igor Polevoy
+ */
+public class QueryCursor implements Iterable<Map<String, Object>>, AutoCloseable {
+
+    private final String query;
+    private final Object[] params;
+    private final List<PreparedStatement> statements = new ArrayList<>();
+    private int fetchSize = 1000;
+
+    /**
+     * @param query SQL query.
+     * @param params parameters of the query.
+     */
+    public QueryCursor(String query, Object... params) {
+        this.query = query;
+        this.params = params;
+    }
+
+    /**
+     * @param fetchSize number of rows the driver reads from database at a time, 1000 by default.
+     * @return this instance.
+     */
+    public QueryCursor fetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    @Override
+    public Iterator<Map<String, Object>> iterator() {
+        PreparedStatement statement = null;
+        try {
+            statement = Base.connection().prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            RowIterator iterator = new RowIterator(statement, statement.executeQuery());
+            if (statements.isEmpty() && RequestContext.getHttpRequest() != null) {
+                RequestContext.addCursor(this);
+            }
+            statements.add(statement);
+            return iterator;
+        } catch (SQLException e) {
+            close(statement);
+            throw new DBException(query, params, e);
+        }
+    }
+
+    /**
+     * Closes statements of iterations that did not reach the last row.
+     */
+    @Override
+    public void close() {
+        for (PreparedStatement statement : new ArrayList<>(statements)) {
+            close(statement);
+        }
+    }
+
+    private void close(PreparedStatement statement) {
+        statements.remove(statement);
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException ignore) {}
+    }
+
+    private class RowIterator implements Iterator<Map<String, Object>> {
+        private final PreparedStatement statement;
+        private final ResultSet resultSet;
+        private final String[] columns;
+        private Boolean hasNext;
+
+        RowIterator(PreparedStatement statement, ResultSet resultSet) throws SQLException {
+            this.statement = statement;
+            this.resultSet = resultSet;
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            columns = new String[metaData.getColumnCount()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = metaData.getColumnLabel(i + 1).toLowerCase();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                try {
+                    hasNext = resultSet.next();
+                } catch (SQLException e) {
+                    close(statement);
+                    throw new DBException(query, params, e);
+                }
+                if (!hasNext) {
+                    close(statement);
+                }
+            }
+            return hasNext;
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = null;
+            Map<String, Object> row = new HashMap<>(columns.length * 2);
+            try {
+                for (int i = 0; i < columns.length; i++) {
+                    row.put(columns[i], resultSet.getObject(i + 1));
+                }
+            } catch (SQLException e) {
+                close(statement);
+                throw new DBException(query, params, e);
+            }
+            return row;
+        }
+    }
+}
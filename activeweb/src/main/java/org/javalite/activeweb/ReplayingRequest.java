@@ -0,0 +1,137 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.*;
+
+/**
+ * Request which body can be peeked at. Bytes read from the body are kept, and after {@link #replay()} the body
+ * is read again from the beginning: kept bytes first, then the rest of the original body.
+ *
+ * @author Igor Polevoy
+ */
+class ReplayingRequest extends HttpServletRequestWrapper {
+
+    private final ByteArrayOutputStream peeked = new ByteArrayOutputStream();
+    private ServletInputStream stream;
+
+    /**
+     * @param request request to wrap.
+     * @param maxBytes maximum number of bytes to peek at, reading more fails with {@link IOException}.
+     */
+    ReplayingRequest(HttpServletRequest request, int maxBytes) throws IOException {
+        super(request);
+        stream = new BodyStream(new PeekingInputStream(request.getInputStream(), maxBytes));
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        return stream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        String encoding = getCharacterEncoding();
+        return new BufferedReader(new InputStreamReader(stream, encoding == null ? "ISO-8859-1" : encoding));
+    }
+
+    /**
+     * Stops keeping bytes, and starts the body over.
+     */
+    void replay() throws IOException {
+        stream = new BodyStream(new SequenceInputStream(new ByteArrayInputStream(peeked.toByteArray()), getRequest().getInputStream()));
+    }
+
+    private class PeekingInputStream extends FilterInputStream {
+        private final int maxBytes;
+
+        PeekingInputStream(InputStream in, int maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (peeked.size() >= maxBytes) {
+                throw new IOException("read more than " + maxBytes + " bytes of request body");
+            }
+            int n = in.read(b, off, Math.min(len, maxBytes - peeked.size()));
+            if (n > 0) {
+                peeked.write(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            int skipped = read(new byte[(int) Math.min(n, 4096)], 0, (int) Math.min(n, 4096));
+            return Math.max(skipped, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    private static class BodyStream extends ServletInputStream {
+        private final InputStream in;
+        private boolean finished;
+
+        BodyStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            finished = b == -1;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            finished = n == -1;
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.javalite.activeweb;
 import javax.servlet.FilterConfig;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,6 +43,10 @@ public class RequestContext {
     private static ThreadLocal<Map<String, Object>> values = new ThreadLocal<>();
     private static ThreadLocal<Boolean> exceptionHappened = new ThreadLocal<>();
     private static ThreadLocal<List<FormItem>> formItems = new ThreadLocal<>();
+    private static ThreadLocal<Object> layoutHead = new ThreadLocal<>();
+    private static ThreadLocal<CookieFlash> cookieFlash = new ThreadLocal<>();
+    private static ThreadLocal<Map<String, Object>> sessionAttributes = new ThreadLocal<>();
+    private static ThreadLocal<List<QueryCursor>> cursors = new ThreadLocal<>();
 
 
     private RequestContext() {}
@@ -85,6 +90,8 @@ public class RequestContext {
 
     static void setHttpRequest(HttpServletRequest req){
         request.set(req);
+        sessionAttributes.set(null);
+        cursors.set(null);
     }
 
     static HttpServletRequest getHttpRequest(){
@@ -161,6 +168,53 @@ public class RequestContext {
         formItems.set(items);
     }
 
+    static Object getLayoutHead() {
+        return layoutHead.get();
+    }
+
+    static void setLayoutHead(Object head) {
+        layoutHead.set(head);
+    }
+
+    static CookieFlash getCookieFlash() {
+        return cookieFlash.get();
+    }
+
+    static void setCookieFlash(CookieFlash flash) {
+        cookieFlash.set(flash);
+    }
+
+    /**
+     * Registers a cursor to be closed at the end of current request, see {@link #closeCursors()}.
+     */
+    static void addCursor(QueryCursor cursor) {
+        if (cursors.get() == null) {
+            cursors.set(new ArrayList<>());
+        }
+        cursors.get().add(cursor);
+    }
+
+    /**
+     * Closes statements of cursors used in current request, which were not read to the end.
+     */
+    static void closeCursors() {
+        List<QueryCursor> list = cursors.get();
+        if (list != null) {
+            cursors.set(null);
+            for (QueryCursor cursor : list) {
+                cursor.close();
+            }
+        }
+    }
+
+    static Map<String, Object> getSessionAttributes() {
+        return sessionAttributes.get();
+    }
+
+    static void setSessionAttributes(Map<String, Object> attributes) {
+        sessionAttributes.set(attributes);
+    }
+
     static void clear() {
         request.set(null);
         response.set(null);
@@ -174,5 +228,8 @@ public class RequestContext {
         values.set(null);
         exceptionHappened.set(false);
         formItems.set(null);
+        layoutHead.set(null);
+        cookieFlash.set(null);
+        sessionAttributes.set(null);
     }
 }
@@ -44,6 +44,9 @@ public class RequestDispatcher implements Filter {
     private AppContext appContext;
     private Bootstrap appBootstrap;
     private String encoding;
+    private boolean preEncodeTemplateText;
+    private CookieSessionStore cookieSessionStore;
+    private OffHeapSessionStore offHeapSessionStore;
 
     private static ThreadLocal<Long> time = new ThreadLocal<>();
 
@@ -52,6 +55,10 @@ public class RequestDispatcher implements Filter {
         Configuration.setFilterConfig(filterConfig);
 
         Configuration.getTemplateManager().setServletContext(filterConfig.getServletContext());
+        if (Configuration.warmUpTemplates()) {
+            Configuration.getTemplateManager().warmUp();
+        }
+        Messages.preload(Configuration.getLocales());
         appContext = new AppContext();
         filterConfig.getServletContext().setAttribute("appContext", appContext);
 
@@ -64,6 +71,18 @@ public class RequestDispatcher implements Filter {
         }
         initApp(appContext);
         encoding = filterConfig.getInitParameter("encoding");
+        preEncodeTemplateText = Configuration.preEncodeTemplateText();
+        if (Configuration.getSessionStore().equals("cookie")) {
+            cookieSessionStore = new CookieSessionStore(Configuration.getSessionCookieKeys(), Configuration.getSessionCookieMaxSize(),
+                    Configuration.getSessionCookieClasses());
+        } else if (Configuration.getSessionStore().equals("offheap")) {
+            offHeapSessionStore = new OffHeapSessionStore(Configuration.getOffHeapSessionsMaxSize());
+        } else if (!Configuration.getSessionStore().equals("container")) {
+            throw new InitException("unknown value of property sessionStore: " + Configuration.getSessionStore());
+        }
+        if (Configuration.getFlashStore().equals("cookie")) {
+            CookieFlash.setKey(Configuration.getFlashCookieKey());
+        }
         logger.info("ActiveWeb: starting the app in environment: " + Configuration.getEnv());
     }
 
@@ -152,12 +171,24 @@ public class RequestDispatcher implements Filter {
 
 
     public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain) throws IOException, ServletException {
+        CookieSessionResponse sessionResponse = null;
+        OffHeapSessionRequest offHeapSessionRequest = null;
         try {
 
             time.set(System.currentTimeMillis());
 
             HttpServletRequest request = (HttpServletRequest) req;
             HttpServletResponse response = (HttpServletResponse) resp;
+            if (cookieSessionStore != null) {
+                CookieSessionRequest sessionRequest = new CookieSessionRequest(request, cookieSessionStore);
+                request = sessionRequest;
+                response = sessionResponse = new CookieSessionResponse(response, sessionRequest);
+            } else if (offHeapSessionStore != null) {
+                request = offHeapSessionRequest = new OffHeapSessionRequest(request, response, offHeapSessionStore);
+            }
+            if (preEncodeTemplateText) {
+                response = new PreEncodingResponse(response);
+            }
 
             if(encoding != null){
                 logger.debug("Setting encoding: " + encoding);
@@ -219,6 +250,20 @@ public class RequestDispatcher implements Filter {
         } catch (Throwable e) {
             renderSystemError("/system/error", useDefaultLayoutForErrors() ? getDefaultLayout():null, 500, e);
         }finally {
+            if (sessionResponse != null) {
+                try {
+                    sessionResponse.finish();
+                } catch (Exception e) {
+                    logger.error("Failed to save session or send response", e);
+                }
+            }
+            if (offHeapSessionRequest != null) {
+                try {
+                    offHeapSessionRequest.saveSession();
+                } catch (Exception e) {
+                    logger.error("Failed to save session", e);
+                }
+            }
             RequestContext.clear();
             Context.clear();
             List<String> connectionsRemaining = DB.getCurrrentConnectionNames();
@@ -1,10 +1,15 @@
 package org.javalite.activeweb;
 
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
 import org.javalite.common.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.*;
 
 import static java.util.Arrays.asList;
@@ -28,6 +33,49 @@ public class RequestUtils {
         return contentType != null && contentType.toLowerCase(Locale.ENGLISH).startsWith(MULTIPART);
     }
 
+    /**
+     * Returns value of a form field from a multipart request, reading only the part of the request body that precedes
+     * the field. Reading stops at the first file of the request, so the field is only found if it comes before
+     * all files. Parts read by this method are read again by {@link HttpSupport#multipartFormItems()} later.
+     *
+     * @param name name of a form field.
+     * @param maxBytes maximum number of bytes of request body to read looking for the field.
+     * @return value of the field, or null if it was not found before the first file or within <code>maxBytes</code>.
+     */
+    public static String leadingMultipartField(String name, int maxBytes) {
+        if (RequestContext.getFormItems() != null) {
+            return param(name, RequestContext.getFormItems());
+        }
+        HttpServletRequest request = RequestContext.getHttpRequest();
+        if (request instanceof AWMockMultipartHttpServletRequest) {
+            return param(name, ((AWMockMultipartHttpServletRequest) request).getFormItems());
+        }
+        String value = null;
+        try {
+            ReplayingRequest replayingRequest = new ReplayingRequest(request, maxBytes);
+            try {
+                FileItemIterator items = new ServletFileUpload().getItemIterator(replayingRequest);
+                while (items.hasNext()) {
+                    FileItemStream item = items.next();
+                    if (!item.isFormField()) {
+                        break;
+                    }
+                    if (name.equals(item.getFieldName())) {
+                        value = Streams.asString(item.openStream());
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to find field '" + name + "' in multipart request: " + e.getMessage());
+            }
+            replayingRequest.replay();
+            RequestContext.setHttpRequest(replayingRequest);
+        } catch (IOException e) {
+            throw new ControllerException(e);
+        }
+        return value;
+    }
+
     /**
      * Returns value of routing user segment, or route wild card value, or request parameter.
      * If this name represents multiple values, this  call will result in {@link IllegalArgumentException}.
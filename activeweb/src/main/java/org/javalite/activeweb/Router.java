@@ -20,8 +20,10 @@ import org.javalite.common.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.javalite.activeweb.ControllerFactory.createControllerInstance;
 import static org.javalite.activeweb.ControllerFactory.getControllerClassName;
@@ -37,6 +39,10 @@ public class Router {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Router.class);
 
+    static final int MAX_URI_TEMPLATES = 4096;
+    private static final Map<UriKey, UriTemplate> uriTemplates = new ConcurrentHashMap<>();
+    private static boolean sortQueryParams = Configuration.sortQueryParams();
+
 
     private String rootControllerName;
     private List<RouteBuilder> routes = new ArrayList<>();
@@ -237,7 +243,9 @@ public class Router {
 
 
     /**
-     * Generates a URI for a controller.
+     * Generates a URI for a controller. Parts of URIs are cached per controller path and action, up to
+     * {@link #MAX_URI_TEMPLATES} combinations, so that paths and actions that come from user input cannot fill
+     * memory. Combinations beyond the limit are built on every call.
      *
      * @param controllerPath path to controller.
      * @param action         action for a controller
@@ -248,68 +256,138 @@ public class Router {
      */
     public static String generate(String controllerPath, String action, String id, boolean restful, Map params) {
 
-        //prepend slash if missing
-        StringBuilder uri = new StringBuilder(controllerPath.startsWith("/") ? controllerPath : "/" + controllerPath);
-
-        if (restful) {
-            if (id != null) {
-                uri.append("/").append(id);
+        UriTemplate template = uriTemplates.get(new UriKey(controllerPath, action, restful));
+        if (template == null) {
+            template = new UriTemplate(controllerPath, action, restful);
+            if (uriTemplates.size() < MAX_URI_TEMPLATES) {
+                uriTemplates.put(new UriKey(controllerPath, action, restful), template);
             }
+        }
 
-            if (action != null) {
-
-                if (!("new_form".equals(action) || "edit_form".equals(action))) {
-                    throw new IllegalArgumentException("Illegal action name: '" + action +
-                            "', allowed names for restful controllers: 'new_form' and 'edit_form'");
-                }
+        if ("new_form".equals(template.restfulAction) && id != null) {
+            throw new IllegalArgumentException("Cannot provide ID to action 'new_form'");
+        }
 
-                if ("new_form".equals(action) && id != null) {
-                    throw new IllegalArgumentException("Cannot provide ID to action 'new_form'");
-                }
+        if ("edit_form".equals(template.restfulAction) && id == null) {
+            throw new IllegalArgumentException("Must provide ID to action 'edit_form'");
+        }
 
-                if ("edit_form".equals(action) && id == null) {
-                    throw new IllegalArgumentException("Must provide ID to action 'edit_form'");
-                }
+        StringBuilder uri = new StringBuilder(64).append(template.head);
+        if (id != null) {
+            uri.append('/').append(id);
+        }
+        uri.append(template.tail);
 
-                uri.append("/").append(action);
+        if (params.isEmpty()) {
+            return uri.toString();
+        }
 
+        uri.append('?');
+        if (sortQueryParams) {
+            List<String> pairs = new ArrayList<>(params.size());
+            for (Object key : params.keySet()) {
+                pairs.add(encode(key.toString()) + "=" + encode(params.get(key).toString()));
             }
-
+            Collections.sort(pairs);
+            Util.join(uri, pairs, "&");
         } else {
-
-            if (action != null) {
-                uri.append("/").append(action);
+            boolean first = true;
+            for (Object key : params.keySet()) {
+                if (!first) {
+                    uri.append('&');
+                }
+                uri.append(encode(key.toString())).append('=').append(encode(params.get(key).toString()));
+                first = false;
             }
+        }
+        return uri.toString();
+    }
 
-            if (id != null) {
-                uri.append("/").append(id);
-            }
+    /**
+     * Sets whether {@link #generate(String, String, String, boolean, Map)} sorts query parameters by name,
+     * see property <code>sortQueryParams</code>. If not sorted, parameters are in order of the map.
+     *
+     * @param sortQueryParams true to sort query parameters.
+     */
+    public static void setSortQueryParams(boolean sortQueryParams) {
+        Router.sortQueryParams = sortQueryParams;
+    }
 
+    /**
+     * @return number of cached parts of URIs.
+     */
+    static int cachedUriTemplates() {
+        return uriTemplates.size();
+    }
+
+    /**
+     * Same as <code>URLEncoder.encode(value, "UTF-8")</code>, but returns value as is if it does not need encoding,
+     * which is the case for most values.
+     */
+    static String encode(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '*')) {
+                try {
+                    return URLEncoder.encode(value, "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    throw new RouteException(e.getMessage(), e);
+                }
+            }
         }
+        return value;
+    }
 
-        if (params.size() > 0) {
-            uri.append("?");
+    /**
+     * Part of URI built from controller path and action, with place for ID in the middle.
+     */
+    private static class UriTemplate {
+        private final String head, tail, restfulAction;
+
+        UriTemplate(String controllerPath, String action, boolean restful) {
+            //prepend slash if missing
+            String controller = controllerPath.startsWith("/") ? controllerPath : "/" + controllerPath;
+            if (restful) {
+                if (action != null && !("new_form".equals(action) || "edit_form".equals(action))) {
+                    throw new IllegalArgumentException("Illegal action name: '" + action +
+                            "', allowed names for restful controllers: 'new_form' and 'edit_form'");
+                }
+                head = controller;
+                tail = action == null ? "" : "/" + action;
+                restfulAction = action;
+            } else {
+                head = action == null ? controller : controller + "/" + action;
+                tail = "";
+                restfulAction = null;
+            }
         }
+    }
 
-        List<String> pairs = new ArrayList<>();
+    private static class UriKey {
+        private final String controllerPath, action;
+        private final boolean restful;
 
-        for (Object key : params.keySet()) {
-            try {
-                pairs.add(URLEncoder.encode(key.toString(), "UTF-8") + "=" + URLEncoder.encode(params.get(key).toString(), "UTF-8"));
-            } catch (Exception e) {
-                pairs.add(URLEncoder.encode(key.toString()) + "=" + URLEncoder.encode(params.get(key).toString()));
-            }
+        UriKey(String controllerPath, String action, boolean restful) {
+            this.controllerPath = controllerPath;
+            this.action = action;
+            this.restful = restful;
         }
-        //sorting to make hard-coded tests pass
-        Collections.sort(pairs, new Comparator<String>() {
-            public int compare(String o1, String o2) {
-                return o1.compareTo(o2);
-            }
-        });
 
-        Util.join(uri, pairs, "&");
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof UriKey)) {
+                return false;
+            }
+            UriKey other = (UriKey) o;
+            return restful == other.restful && controllerPath.equals(other.controllerPath)
+                    && Objects.equals(action, other.action);
+        }
 
-        return uri.toString();
+        @Override
+        public int hashCode() {
+            return (controllerPath.hashCode() * 31 + Objects.hashCode(action)) * 31 + (restful ? 1 : 0);
+        }
     }
 
 
@@ -71,6 +71,7 @@ public class SessionFacade implements Map {
      */
     public void remove(String name){
         RequestContext.getHttpRequest().getSession(true).removeAttribute(name);
+        SessionHelper.attributeRemoved(name);
     }
 
     /**
@@ -81,6 +82,7 @@ public class SessionFacade implements Map {
     public Object put(String name, Serializable value){
         Object val = RequestContext.getHttpRequest().getSession(true).getAttribute(name);
         RequestContext.getHttpRequest().getSession(true).setAttribute(name, value);
+        SessionHelper.attributeSet(name, value);
         return val;
     }
 
@@ -98,6 +100,7 @@ public class SessionFacade implements Map {
      */
     public void invalidate(){
         RequestContext.getHttpRequest().getSession(true).invalidate();
+        SessionHelper.invalidated();
     }
 
     /**
@@ -139,6 +142,7 @@ public class SessionFacade implements Map {
      */
     public void destroy(){
         RequestContext.getHttpRequest().getSession(true).invalidate();
+        SessionHelper.invalidated();
     }
 
 
@@ -186,6 +190,7 @@ public class SessionFacade implements Map {
     public Object remove(Object key) {
         Object val = get(key.toString());
         RequestContext.getHttpRequest().getSession(true).removeAttribute(key.toString());
+        SessionHelper.attributeRemoved(key.toString());
         return val;
     }
 
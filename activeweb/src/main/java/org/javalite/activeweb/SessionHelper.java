@@ -17,6 +17,7 @@ limitations under the License.
 package org.javalite.activeweb;
 
 import javax.servlet.http.HttpSession;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
@@ -29,20 +30,52 @@ class SessionHelper {
 	private SessionHelper() {}
 	
     /**
-     * Returns all session attributes in a map.
+     * Returns all session attributes in a read-only map. Attributes are read from session once per request,
+     * the map is then kept current by writes made through {@link SessionFacade}.
      *
-     * @return all session attributes in a map.
+     * @return all session attributes in a read-only map.
      */
      protected static Map<String, Object> getSessionAttributes(){
-        //TODO: cache session attributes map since this method can be called multiple times during a request.
-
-        HttpSession session = RequestContext.getHttpRequest().getSession(true);
-        Enumeration names = session.getAttributeNames();
-        Map<String, Object> values = new HashMap<>();
-        while (names.hasMoreElements()) {
-            Object name = names.nextElement();
-            values.put(name.toString(), session.getAttribute(name.toString()));
+        Map<String, Object> values = RequestContext.getSessionAttributes();
+        if (values == null) {
+            values = new HashMap<>();
+            HttpSession session = RequestContext.getHttpRequest().getSession(false);
+            if (session != null) {
+                Enumeration names = session.getAttributeNames();
+                while (names.hasMoreElements()) {
+                    Object name = names.nextElement();
+                    values.put(name.toString(), session.getAttribute(name.toString()));
+                }
+            }
+            RequestContext.setSessionAttributes(values);
         }
-        return values;
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Records a session attribute set during current request, see {@link #getSessionAttributes()}.
+     */
+    static void attributeSet(String name, Object value) {
+        Map<String, Object> values = RequestContext.getSessionAttributes();
+        if (values != null) {
+            values.put(name, value);
+        }
+    }
+
+    /**
+     * Records a session attribute removed during current request, see {@link #getSessionAttributes()}.
+     */
+    static void attributeRemoved(String name) {
+        Map<String, Object> values = RequestContext.getSessionAttributes();
+        if (values != null) {
+            values.remove(name);
+        }
+    }
+
+    /**
+     * Discards attributes read during current request, because session was invalidated.
+     */
+    static void invalidated() {
+        RequestContext.setSessionAttributes(null);
     }
 }
@@ -0,0 +1,96 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads session attributes, refusing to create objects of classes that are not allowed, so that a forged or
+ * leaked session cannot make the application instantiate arbitrary classes. Allowed are strings, numbers, booleans,
+ * characters, dates, arrays of these, and collections of <code>java.util</code>, plus classes listed in property
+ * <code>sessionCookieClasses</code>.
+ *
+ * @author Igor Polevoy
+ */
+class SessionObjectInputStream extends ObjectInputStream {
+
+    private static final Set<String> ALLOWED = new HashSet<>(Arrays.asList(
+            "java.lang.String", "java.lang.Boolean", "java.lang.Character", "java.lang.Number", "java.lang.Byte",
+            "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double",
+            "java.lang.Enum", "java.math.BigInteger", "java.math.BigDecimal",
+            "java.util.ArrayList", "java.util.LinkedList", "java.util.HashMap", "java.util.LinkedHashMap",
+            "java.util.TreeMap", "java.util.HashSet", "java.util.LinkedHashSet", "java.util.TreeSet",
+            "java.util.Arrays$ArrayList", "java.util.Collections$EmptyList", "java.util.Collections$EmptyMap",
+            "java.util.Collections$EmptySet", "java.util.Collections$SingletonList",
+            "java.util.Collections$SingletonMap", "java.util.Collections$SingletonSet",
+            "java.util.Collections$UnmodifiableCollection", "java.util.Collections$UnmodifiableList",
+            "java.util.Collections$UnmodifiableRandomAccessList", "java.util.Collections$UnmodifiableMap",
+            "java.util.Collections$UnmodifiableSet", "java.util.Date", "java.util.Locale", "java.util.UUID",
+            "java.sql.Date", "java.sql.Time", "java.sql.Timestamp", "java.time.Ser"));
+
+    private final String[] allowed;
+
+    /**
+     * @param in stream of serialized session.
+     * @param allowed names of classes allowed in addition to the default ones, or packages ending with ".*".
+     */
+    SessionObjectInputStream(InputStream in, String[] allowed) throws IOException {
+        super(in);
+        this.allowed = allowed;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        String name = desc.getName();
+        while (name.startsWith("[")) {
+            name = name.substring(1);
+        }
+        if (name.startsWith("L") && name.endsWith(";")) {
+            name = name.substring(1, name.length() - 1);
+        } else if (name.length() == 1) {
+            return super.resolveClass(desc); // array of primitives
+        }
+        if (!allowed(name)) {
+            throw new InvalidClassException(name, "class is not allowed in session, see property sessionCookieClasses");
+        }
+        return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+        throw new InvalidClassException("proxy classes are not allowed in session");
+    }
+
+    private boolean allowed(String name) {
+        if (ALLOWED.contains(name)) {
+            return true;
+        }
+        for (String allowedName : allowed) {
+            if (allowedName.endsWith(".*") ? name.startsWith(allowedName.substring(0, allowedName.length() - 1))
+                    : name.equals(allowedName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -55,6 +55,53 @@ public abstract class TemplateManager {
      */
     public abstract void setTemplateLocation(String templateLocation);
 
+    /**
+     * Loads and parses all templates ahead of first requests. Called at application start if property
+     * <code>warmUpTemplates</code> is <code>true</code>. Default implementation does nothing.
+     *
+     * @throws InitException if any of templates fails to load or parse.
+     */
+    public void warmUp() {}
+
+    /**
+     * Writes the part of a layout that precedes page content, so that it can be sent to the client before a controller
+     * action executes. A subsequent call to {@link #merge(Map, String, String, String, Writer)} in the same request
+     * renders the page into this layout, regardless of the layout requested at that time.
+     * Implementations that do not support this return false and write nothing.
+     *
+     * @param values values to be merged.
+     * @param layout name of layout.
+     * @param writer Writer to write results to.
+     * @return true if the head of the layout was written, false if not supported.
+     */
+    public boolean mergeLayoutHead(Map<String, Object> values, String layout, Writer writer) {
+        return false;
+    }
+
+    /**
+     * Completes a layout whose head was written by {@link #mergeLayoutHead(Map, String, Writer)}, without page content.
+     * Called when an action produced a response other than a page after the head had been sent to the client.
+     *
+     * @param writer Writer to write results to.
+     */
+    public void completeLayout(Writer writer) {}
+
+    /**
+     * Keeps state of a layout whose head was sent to the client for the duration of the current request.
+     *
+     * @param head state of a layout, <code>null</code> to clear.
+     */
+    protected final void setLayoutHead(Object head) {
+        RequestContext.setLayoutHead(head);
+    }
+
+    /**
+     * @return state of a layout set by {@link #setLayoutHead(Object)} in the current request, or <code>null</code>.
+     */
+    protected final Object getLayoutHead() {
+        return RequestContext.getLayoutHead();
+    }
+
     /**
      * Session ID from underlying session, or null if session does not exist.
      */
@@ -4,6 +4,11 @@ import org.javalite.activeweb.*;
 
 public class CSRFFilter extends HttpSupportFilter {
 
+    /**
+     * Maximum number of bytes of a multipart request read looking for a token. A token has to precede files and
+     * large fields of a multipart form, so that forged uploads are rejected without reading them.
+     */
+    private static final int MAX_MULTIPART_PREFIX = 64 * 1024;
 
     public CSRFFilter() {
         CSRF.enableVerification();
@@ -20,24 +25,20 @@ public class CSRFFilter extends HttpSupportFilter {
     }
 
     private void verify() {
-        String sessionName = sessionString(CSRF.CSRF_TOKEN_NAME);
-        String sessionToken = sessionString(CSRF.CSRF_TOKEN_VALUE);
-        if (sessionToken != null && sessionName != null) {
-            String token = param(sessionName);
+        if (CSRF.signedTokens()) {
+            String token = requestToken(CSRF.name());
             if (token == null) {
-                token = header(CSRF.HTTP_HEADER_NAME);
+                throw new SecurityException("CSRF attack detected! Token not found!");
             }
-            if (token == null && RequestUtils.isMultipartContent()) {
-                int i = 0;
-                for(FormItem fi : multipartFormItems()) {
-                    if (fi.isFormField() && sessionName.equals(fi.getFieldName())) {
-                        token = new String(fi.getBytes());
-                        multipartFormItems().remove(i);
-                        break;
-                    }
-                    i++;
-                }
+            if (!CSRF.verifySignedToken(token)) {
+                throw new SecurityException("CSRF attack detected! Request token is not valid!");
             }
+            return;
+        }
+        String sessionName = sessionString(CSRF.CSRF_TOKEN_NAME);
+        String sessionToken = sessionString(CSRF.CSRF_TOKEN_VALUE);
+        if (sessionToken != null && sessionName != null) {
+            String token = requestToken(sessionName);
             if (token == null) {
                 throw new SecurityException("CSRF attack detected! Token not found!");
             }
@@ -48,4 +49,15 @@ public class CSRFFilter extends HttpSupportFilter {
             throw new SecurityException("CSRF attack detected! Session token missing!");
         }
     }
+
+    private String requestToken(String name) {
+        String token = param(name);
+        if (token == null) {
+            token = header(CSRF.HTTP_HEADER_NAME);
+        }
+        if (token == null && RequestUtils.isMultipartContent()) {
+            token = RequestUtils.leadingMultipartField(name, MAX_MULTIPART_PREFIX);
+        }
+        return token;
+    }
 }
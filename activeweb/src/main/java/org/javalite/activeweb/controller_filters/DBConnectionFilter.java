@@ -18,16 +18,26 @@ package org.javalite.activeweb.controller_filters;
 import org.javalite.activejdbc.DB;
 import org.javalite.activejdbc.connection_config.ConnectionSpecWrapper;
 import org.javalite.activejdbc.connection_config.DbConfiguration;
+import org.javalite.activeweb.AbstractDBConfig;
 import org.javalite.activeweb.Configuration;
 import org.javalite.activeweb.InitException;
 import org.javalite.activeweb.RequestContext;
+import org.javalite.activeweb.Route;
+import org.javalite.activeweb.annotations.ReadOnly;
+import org.javalite.common.Inflector;
 
+import java.sql.Connection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class is to be used in web apps that use ActiveJDBC. This class will open a connection configured in <code>DBConfig</code> class
  * of the application before controller is executed and will close it after.
+ * <p></p>
+ * If read replicas are configured with {@link AbstractDBConfig#replica(String)}, see
+ * {@link #readFromReplicas(ReplicaSelection)} to serve read-only actions from replicas.
  *
  * @author Igor Polevoy
  */
@@ -35,6 +45,23 @@ public class DBConnectionFilter extends AppControllerFilter {
 
     private String dbName;
     private boolean manageTransaction;
+    private boolean lazy;
+    private ReplicaSelector replicaSelector;
+    private final ThreadLocal<Map<String, ConnectionSpecWrapper>> replicasInUse = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * How a read replica is chosen for a request, see {@link #readFromReplicas(ReplicaSelection)}.
+     */
+    public enum ReplicaSelection {
+        /**
+         * Replicas are used in turn.
+         */
+        ROUND_ROBIN,
+        /**
+         * Replica used by the least number of current requests is chosen.
+         */
+        LEAST_LOADED
+    }
 
     /**
      * This constructor is used to open all configured connections for a current environment.
@@ -70,6 +97,39 @@ public class DBConnectionFilter extends AppControllerFilter {
         this.dbName = dbName;
     }
 
+    /**
+     * Use this constructor to only open a named DB connection for a given environment, specify
+     * if this filter needs to manage transactions and whether to open connections lazily.
+     *
+     * @param dbName name of DB to open, null to open all configured connections
+     * @param manageTransaction see {@link #DBConnectionFilter(String, boolean)}
+     * @param lazy if set to true, a connection is not taken from the driver or pool until the first statement
+     * of a request is executed. A transaction is also started only then. Requests that do not use the database,
+     * such as redirects or pages served from cache, then do not hold a connection at all.
+     */
+    public DBConnectionFilter(String dbName, boolean manageTransaction, boolean lazy) {
+        this(dbName, manageTransaction);
+        this.lazy = lazy;
+    }
+
+    /**
+     * Makes this filter open connections to read replicas for GET and HEAD requests, and for actions annotated
+     * with {@link ReadOnly}. Other requests use the primary connection. A database that has no replicas configured
+     * is always opened from its primary connection.
+     * <p></p>
+     * On a replica, queries run on the replica. An explicit transaction, such as <code>Base.openTransaction()</code>,
+     * or a statement that may write switches the request to the primary connection, which is opened only then.
+     * Transactions are not managed by this filter on such requests: writes made outside of an explicit transaction
+     * are committed one at a time.
+     *
+     * @param selection how a replica is chosen for a request
+     * @return self
+     */
+    public DBConnectionFilter readFromReplicas(ReplicaSelection selection) {
+        replicaSelector = new ReplicaSelector(selection == ReplicaSelection.LEAST_LOADED);
+        return this;
+    }
+
     @Override
     public void before() {
 
@@ -82,9 +142,29 @@ public class DBConnectionFilter extends AppControllerFilter {
             throw new InitException("There are no connection specs in '" + Configuration.getEnv() + "' environment");
         }
 
-        for (ConnectionSpecWrapper connectionWrapper : connectionWrappers) {
-            DB db = new DB(connectionWrapper.getDbName());
-            db.open(connectionWrapper.getConnectionSpec());
+        boolean readOnly = replicaSelector != null && readOnlyAction();
+        for (ConnectionSpecWrapper primaryWrapper : connectionWrappers) {
+            ConnectionSpecWrapper replicaWrapper = readOnly
+                    ? replicaSelector.acquire(AbstractDBConfig.getReplicaConnectionSpecWrappers(primaryWrapper.getDbName()))
+                    : null;
+            DB db = new DB(primaryWrapper.getDbName());
+            if (replicaWrapper != null) {
+                replicasInUse.get().put(primaryWrapper.getDbName(), replicaWrapper);
+                Connection replica;
+                if (lazy) {
+                    replica = LazyConnection.create(() -> open(replicaWrapper));
+                } else {
+                    db.open(replicaWrapper.getConnectionSpec());
+                    replica = db.detach();
+                }
+                db.attach(ReplicaConnection.create(replica, () -> open(primaryWrapper)));
+                continue;
+            }
+            if (lazy) {
+                db.attach(LazyConnection.create(() -> open(primaryWrapper)));
+            } else {
+                db.open(primaryWrapper.getConnectionSpec());
+            }
             if(manageTransaction){
                 db.openTransaction();
             }
@@ -100,15 +180,22 @@ public class DBConnectionFilter extends AppControllerFilter {
         if (connectionWrappers != null && !connectionWrappers.isEmpty()) {
             for (ConnectionSpecWrapper connectionWrapper : connectionWrappers) {
                 DB db = new DB(connectionWrapper.getDbName());
-                if(db.hasConnection()){
-                    if(manageTransaction){
-                        if (RequestContext.exceptionHappened()) {
-                            logDebug("Skip commit transaction because already rolled back.");
-                        } else {
-                            db.commitTransaction();
+                ConnectionSpecWrapper replicaWrapper = replicasInUse.get().remove(connectionWrapper.getDbName());
+                try {
+                    if(db.hasConnection()){
+                        if(manageTransaction && replicaWrapper == null){
+                            if (RequestContext.exceptionHappened()) {
+                                logDebug("Skip commit transaction because already rolled back.");
+                            } else {
+                                db.commitTransaction();
+                            }
                         }
+                        db.close();
+                    }
+                } finally {
+                    if (replicaWrapper != null) {
+                        replicaSelector.release(replicaWrapper);
                     }
-                    db.close();
                 }
             }
         }
@@ -124,7 +211,7 @@ public class DBConnectionFilter extends AppControllerFilter {
             for (ConnectionSpecWrapper connectionWrapper : connectionWrappers) {
                 DB db = new DB(connectionWrapper.getDbName());
                 if (db.hasConnection()) {
-                    if (manageTransaction) {
+                    if (manageTransaction && !replicasInUse.get().containsKey(connectionWrapper.getDbName())) {
                         db.rollbackTransaction();
                         logDebug("Rolling back transaction due to exception: " + e);
                     }
@@ -134,6 +221,36 @@ public class DBConnectionFilter extends AppControllerFilter {
         }
     }
 
+    /**
+     * @return true if the current request can be served from read replicas.
+     */
+    private boolean readOnlyAction() {
+        if (isGet() || isHead()) {
+            return true;
+        }
+        Route route = getRoute();
+        try {
+            String actionMethod = Inflector.camelize(route.getActionName().replace('-', '_'), false);
+            return route.getController().getClass().getMethod(actionMethod).isAnnotationPresent(ReadOnly.class);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a physical connection for a lazy connection attached to the current thread.
+     */
+    private static Connection open(ConnectionSpecWrapper connectionWrapper) {
+        DB db = new DB(connectionWrapper.getDbName());
+        Connection lazyConnection = db.detach();
+        try {
+            db.open(connectionWrapper.getConnectionSpec());
+            return db.detach();
+        } finally {
+            db.attach(lazyConnection);
+        }
+    }
+
     /**
      * Returns all connections which correspond dbName  of this filter and not for testing
      * 
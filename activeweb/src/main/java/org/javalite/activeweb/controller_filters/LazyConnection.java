@@ -0,0 +1,100 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.controller_filters;
+
+import org.javalite.activejdbc.DBException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.Callable;
+
+/**
+ * Stands in for a connection that is not opened until it is used. Switching auto-commit, committing, rolling back
+ * and closing before first use are remembered or skipped rather than opening a connection for them, so that a
+ * request which never touches the database costs nothing.
+ *
+ * @author Igor Polevoy
+ */
+class LazyConnection implements InvocationHandler {
+
+    private final Callable<Connection> opener;
+    private Connection connection;
+    private boolean autoCommit = true;
+    private boolean closed;
+
+    private LazyConnection(Callable<Connection> opener) {
+        this.opener = opener;
+    }
+
+    /**
+     * @param opener opens a physical connection on first use.
+     * @return connection that opens a physical connection on first use.
+     */
+    static Connection create(Callable<Connection> opener) {
+        return (Connection) Proxy.newProxyInstance(LazyConnection.class.getClassLoader(),
+                new Class[]{Connection.class}, new LazyConnection(opener));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String call = method.getName() + (args == null ? 0 : args.length);
+        if (call.equals("equals1")) {
+            return proxy == args[0];
+        } else if (call.equals("hashCode0")) {
+            return System.identityHashCode(proxy);
+        }
+        if (connection == null) {
+            switch (call) {
+                case "toString0":
+                    return "lazy connection, not opened";
+                case "setAutoCommit1":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "getAutoCommit0":
+                    return autoCommit;
+                case "commit0":
+                case "rollback0":
+                    return null;
+                case "close0":
+                    closed = true;
+                    return null;
+                case "isClosed0":
+                    return closed;
+                default:
+                    open();
+            }
+        }
+        try {
+            return method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void open() throws Exception {
+        if (closed) {
+            throw new DBException("Connection is closed");
+        }
+        Connection physical = opener.call();
+        if (!autoCommit) {
+            physical.setAutoCommit(false);
+        }
+        connection = physical;
+    }
+}
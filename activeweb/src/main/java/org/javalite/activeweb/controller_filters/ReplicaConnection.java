@@ -0,0 +1,173 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.controller_filters;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+
+/**
+ * Connection of a request served from a read replica. Queries run on the replica. An explicit transaction, or
+ * a statement that may write, switches the connection to the primary database for the rest of the request, so that
+ * writes go to the primary and later reads of the request see them. The primary connection is only opened then.
+ *
+ * @author Igor Polevoy
+ */
+class ReplicaConnection implements InvocationHandler {
+
+    private static final Pattern READ = Pattern.compile("[\\s(]*(select|with|show|explain|describe)\\b.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern WRITE = Pattern.compile(".*\\b(insert|update|delete|merge|replace|into|lock|share)\\b.*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final Connection replica;
+    private final Callable<Connection> primaryOpener;
+    private Connection primary;
+    private Connection proxy;
+
+    private ReplicaConnection(Connection replica, Callable<Connection> primaryOpener) {
+        this.replica = replica;
+        this.primaryOpener = primaryOpener;
+    }
+
+    /**
+     * @param replica connection to a read replica.
+     * @param primaryOpener opens a connection to the primary database when it is first needed.
+     * @return connection that reads from the replica until a transaction is started or a statement may write.
+     */
+    static Connection create(Connection replica, Callable<Connection> primaryOpener) {
+        ReplicaConnection handler = new ReplicaConnection(replica, primaryOpener);
+        handler.proxy = (Connection) Proxy.newProxyInstance(ReplicaConnection.class.getClassLoader(),
+                new Class[]{Connection.class}, handler);
+        return handler.proxy;
+    }
+
+    /**
+     * @return true if a statement only reads. Statements that cannot be told apart, such as
+     * <code>SELECT ... FOR UPDATE</code> or ones mentioning a table named "orders_update", are taken as writes.
+     */
+    static boolean reads(String sql) {
+        return READ.matcher(sql).matches() && !WRITE.matcher(sql).matches();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        String call = name + (args == null ? 0 : args.length);
+        switch (call) {
+            case "equals1":
+                return proxy == args[0];
+            case "hashCode0":
+                return System.identityHashCode(proxy);
+            case "toString0":
+                return "replica connection, " + (primary == null ? "reading from replica" : "switched to primary");
+            case "setAutoCommit1":
+                if (!(Boolean) args[0]) {
+                    usePrimary(); // explicit transaction
+                }
+                break;
+            case "close0":
+                try {
+                    replica.close();
+                } finally {
+                    if (primary != null) {
+                        primary.close();
+                    }
+                }
+                return null;
+            default:
+                if ((name.equals("prepareStatement") || name.equals("prepareCall")) && !reads((String) args[0])) {
+                    usePrimary();
+                } else if (name.equals("createStatement") && primary == null) {
+                    return Proxy.newProxyInstance(ReplicaConnection.class.getClassLoader(),
+                            new Class[]{Statement.class}, new RoutedStatement(method, args));
+                }
+        }
+        return call(connection(), method, args);
+    }
+
+    private Connection connection() {
+        return primary == null ? replica : primary;
+    }
+
+    private Connection usePrimary() throws Exception {
+        if (primary == null) {
+            primary = primaryOpener.call();
+        }
+        return primary;
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Statement that is created on the replica or on the primary once its first SQL is known. Settings made before,
+     * such as fetch size, are applied to it then.
+     */
+    private class RoutedStatement implements InvocationHandler {
+        private final Method create;
+        private final Object[] createArgs;
+        private final List<Object[]> settings = new ArrayList<>();
+        private Statement statement;
+        private boolean closed;
+
+        RoutedStatement(Method create, Object[] createArgs) {
+            this.create = create;
+            this.createArgs = createArgs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (statement == null) {
+                if (name.equals("equals")) {
+                    return proxy == args[0];
+                } else if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                } else if (name.equals("getConnection")) {
+                    return ReplicaConnection.this.proxy;
+                } else if (name.equals("close")) {
+                    closed = true;
+                    return null;
+                } else if (name.equals("isClosed")) {
+                    return closed;
+                } else if (name.startsWith("set") && method.getReturnType() == void.class) {
+                    settings.add(new Object[]{method, args});
+                    return null;
+                }
+                Connection connection = args != null && args.length > 0 && args[0] instanceof String
+                        && !reads((String) args[0]) ? usePrimary() : connection();
+                statement = (Statement) call(connection, create, createArgs);
+                for (Object[] setting : settings) {
+                    call(statement, (Method) setting[0], (Object[]) setting[1]);
+                }
+            }
+            return call(statement, method, args);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License"); 
+you may not use this file except in compliance with the License. 
+You may obtain a copy of the License at 
+
+http://www.apache.org/licenses/LICENSE-2.0 
+
+Unless required by applicable law or agreed to in writing, software 
+distributed under the License is distributed on an "AS IS" BASIS, 
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+See the License for the specific language governing permissions and 
+limitations under the License. 
+*/
+package org.javalite.activeweb.controller_filters;
+
+import org.javalite.activejdbc.connection_config.ConnectionSpecWrapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks a read replica for a request, in turn or by the least number of requests currently using each replica.
+ *
+ * @author Igor Polevoy
+ */
+class ReplicaSelector {
+
+    private final boolean leastLoaded;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<ConnectionSpecWrapper, AtomicInteger> inUse = new ConcurrentHashMap<>();
+
+    ReplicaSelector(boolean leastLoaded) {
+        this.leastLoaded = leastLoaded;
+    }
+
+    /**
+     * @param replicas replicas of a database.
+     * @return selected replica, which should be released after use; null if there are no replicas.
+     */
+    ConnectionSpecWrapper acquire(List<ConnectionSpecWrapper> replicas) {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        ConnectionSpecWrapper selected = replicas.get(start);
+        if (leastLoaded) {
+            for (int i = 1; i < replicas.size(); i++) {
+                ConnectionSpecWrapper replica = replicas.get((start + i) % replicas.size());
+                if (counter(replica).get() < counter(selected).get()) {
+                    selected = replica;
+                }
+            }
+        }
+        counter(selected).incrementAndGet();
+        return selected;
+    }
+
+    void release(ConnectionSpecWrapper replica) {
+        counter(replica).decrementAndGet();
+    }
+
+    /**
+     * @return number of requests using a replica.
+     */
+    int inUse(ConnectionSpecWrapper replica) {
+        return counter(replica).get();
+    }
+
+    private AtomicInteger counter(ConnectionSpecWrapper replica) {
+        return inUse.computeIfAbsent(replica, r -> new AtomicInteger());
+    }
+}
@@ -0,0 +1,209 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import freemarker.ext.beans.StringModel;
+import freemarker.template.*;
+import org.javalite.activejdbc.Association;
+import org.javalite.activejdbc.MetaModel;
+import org.javalite.activejdbc.Model;
+import org.javalite.activejdbc.Registry;
+import org.javalite.activejdbc.associations.BelongsToAssociation;
+import org.javalite.activejdbc.associations.BelongsToPolymorphicAssociation;
+import org.javalite.activeweb.QueryCursor;
+import org.javalite.activeweb.ViewException;
+import org.javalite.common.Inflector;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Object wrapper used by {@link FreeMarkerTemplateManager}. Wraps ActiveJDBC models so that their attributes and
+ * associations are read directly, without introspection of <code>get(String)</code> on every access:
+ *
+ * <ul>
+ *     <li><code>${book.title}</code> - attribute, same as <code>book.get("title")</code></li>
+ *     <li><code>${book.author.name}</code> - parent, same as <code>book.parent(Author.class)</code></li>
+ *     <li><code>&lt;#list author.books as book&gt;</code> - children, same as <code>author.getAll(Book.class)</code></li>
+ * </ul>
+ *
+ * How a name is resolved is cached per model class. Getters and methods declared by the model class itself, such as
+ * <code>getTitle()</code> overriding the <code>title</code> attribute, win over attributes and associations. Names
+ * that are neither attributes nor associations are resolved as on other Java objects.
+ * <p></p>
+ * Instances of {@link QueryCursor} and of <code>java.util.stream.Stream</code> can be listed with <code>#list</code>.
+ * Their elements are pulled one at a time while the list is written, rather than copied into a sequence first.
+ * A stream can only be listed once. Other objects, including other implementations of <code>Iterable</code>, are
+ * wrapped the same way as by {@link DefaultObjectWrapper}, so that their properties and methods stay available.
+ *
+ * @author Igor Polevoy
+ */
+public class ActiveWebObjectWrapper extends DefaultObjectWrapper {
+
+    private static final Map<Class, Map<String, Accessor>> accessors = new ConcurrentHashMap<>();
+
+    public ActiveWebObjectWrapper() {
+        super(Configuration.VERSION_2_3_0);
+    }
+
+    @Override
+    protected TemplateModel handleUnknownType(Object obj) throws TemplateModelException {
+        if (obj instanceof Model) {
+            return new ModelModel((Model) obj, this);
+        } else if (obj instanceof QueryCursor) {
+            return new SimpleCollection((QueryCursor) obj, this);
+        } else if (obj instanceof Stream) {
+            return new SimpleCollection(((Stream) obj).iterator(), this);
+        }
+        return super.handleUnknownType(obj);
+    }
+
+    private static Accessor accessor(Model model, String name) {
+        Map<String, Accessor> classAccessors = accessors.get(model.getClass());
+        if (classAccessors == null) {
+            classAccessors = accessors.computeIfAbsent(model.getClass(), c -> new ConcurrentHashMap<>());
+        }
+        Accessor accessor = classAccessors.get(name);
+        if (accessor == null) {
+            accessor = resolve(model.getClass(), name);
+            classAccessors.put(name, accessor);
+        }
+        return accessor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Accessor resolve(Class<? extends Model> modelClass, String name) {
+        if (declaresMember(modelClass, name)) {
+            return Accessor.OTHER;
+        }
+        MetaModel metaModel = Registry.instance().getMetaModel(modelClass);
+        if (metaModel.getAttributeNamesSkip().contains(name.toLowerCase())) {
+            return Accessor.ATTRIBUTE;
+        }
+        MetaModel target = Registry.instance().getMetaModel(name);
+        if (target == null) {
+            target = Registry.instance().getMetaModel(Inflector.pluralize(name));
+        }
+        Association association = target == null ? null : metaModel.getAssociationForTarget(target.getModelClass());
+        if (association == null) {
+            return Accessor.OTHER;
+        }
+        boolean parent = association instanceof BelongsToAssociation || association instanceof BelongsToPolymorphicAssociation;
+        return new Accessor(parent ? Accessor.Kind.PARENT : Accessor.Kind.CHILDREN, association.getTargetClass());
+    }
+
+    /**
+     * @return true if a subclass of {@link Model} declares a getter for property <code>name</code> or a public method
+     * <code>name()</code>. These take precedence over attributes and associations of the same name, as they did before
+     * models were read directly.
+     */
+    private static boolean declaresMember(Class<? extends Model> modelClass, String name) {
+        try {
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(modelClass, Model.class).getPropertyDescriptors()) {
+                if (descriptor.getName().equals(name) && descriptor.getReadMethod() != null) {
+                    return true;
+                }
+            }
+        } catch (IntrospectionException e) {
+            throw new ViewException(e);
+        }
+        for (Method method : modelClass.getMethods()) {
+            if (method.getName().equals(name) && method.getDeclaringClass() != Model.class
+                    && Model.class.isAssignableFrom(method.getDeclaringClass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Accessor {
+        enum Kind {ATTRIBUTE, PARENT, CHILDREN, OTHER}
+
+        static final Accessor ATTRIBUTE = new Accessor(Kind.ATTRIBUTE, null);
+        static final Accessor OTHER = new Accessor(Kind.OTHER, null);
+
+        private final Kind kind;
+        private final Class<? extends Model> target;
+
+        Accessor(Kind kind, Class<? extends Model> target) {
+            this.kind = kind;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Model as a hash of its attributes.
+     */
+    private static class ModelModel extends StringModel {
+        private final Model model;
+
+        ModelModel(Model model, ActiveWebObjectWrapper wrapper) {
+            super(model, wrapper);
+            this.model = model;
+        }
+
+        @Override
+        public TemplateModel get(String key) throws TemplateModelException {
+            Accessor accessor = accessor(model, key);
+            switch (accessor.kind) {
+                case ATTRIBUTE:
+                    return wrap(model.get(key));
+                case PARENT:
+                    return wrap(model.parent(accessor.target));
+                case CHILDREN:
+                    return wrap(model.getAll(accessor.target));
+                default:
+                    return super.get(key);
+            }
+        }
+
+        @Override
+        public TemplateCollectionModel keys() {
+            return new SimpleCollection(attributeNames(), wrapper);
+        }
+
+        @Override
+        public TemplateCollectionModel values() throws TemplateModelException {
+            List<Object> values = new ArrayList<>();
+            for (String name : attributeNames()) {
+                values.add(model.get(name));
+            }
+            return new SimpleCollection(values, wrapper);
+        }
+
+        @Override
+        public int size() {
+            return attributeNames().size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        private Set<String> attributeNames() {
+            return Registry.instance().getMetaModel(model.getClass()).getAttributeNamesSkip();
+        }
+    }
+}
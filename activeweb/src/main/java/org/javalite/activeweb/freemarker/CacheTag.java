@@ -0,0 +1,110 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import freemarker.core.Environment;
+import freemarker.template.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Caches rendered body, so that expensive parts of a page, such as menus or lists, are not rendered on every request.
+ * Fragments are stored in {@link FragmentCache}.
+ * <p></p>
+ * Attributes:
+ * <ul>
+ *     <li><strong>key</strong> - required, key of a fragment in cache.</li>
+ *     <li><strong>ttl</strong> - optional, time to live in seconds. If not provided, a fragment stays in cache
+ *     until it is evicted.</li>
+ *     <li><strong>vary</strong> - optional, a value or a list of values appended to key, such as locale or ID of a user,
+ *     for fragments that are different for different requests.</li>
+ * </ul>
+ *
+ * Example:
+ *
+ * <pre>
+ *     &lt;@cache key="menu" ttl=300 vary=[locale, user.role]&gt;
+ *         ...
+ *     &lt;/@cache&gt;
+ * </pre>
+ *
+ * The fragment above is cached under a key such as <code>menu/en/admin</code>. Characters '/' and '%' in the key
+ * and in values are escaped, so that different values cannot make the same key. When data of the menu changes,
+ * evict all its versions with <code>FragmentCache.evict("menu")</code>.
+ * <p></p>
+ * Only output of the body is cached. Side effects of tags within the body, such as <code>&lt;@content&gt;</code>,
+ * happen only when the fragment is rendered. Do not cache fragments specific to a session, such as forms with
+ * CSRF tokens, unless <code>vary</code> includes a value that is unique to the session.
+ *
+ * @author Igor Polevoy
+ */
+public class CacheTag extends FreeMarkerTag {
+
+    @Override
+    public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body) throws TemplateException, IOException {
+        FreeMarkerTL.setEnvironment(env);
+        if (params.get("key") == null) {
+            throw new IllegalArgumentException("attribute 'key' is missing");
+        }
+
+        String key = getKey(params);
+        String content = FragmentCache.get(key);
+        if (content == null) {
+            StringWriter sw = new StringWriter();
+            if (body != null) {
+                body.render(sw);
+            }
+            content = sw.toString();
+            FragmentCache.put(key, content, getTtlMillis(params));
+        }
+        env.getOut().write(content);
+    }
+
+    /**
+     * Writes a body that was rendered already, without caching it.
+     */
+    @Override
+    protected void render(Map params, String body, Writer writer) throws Exception {
+        writer.write(body);
+    }
+
+    private long getTtlMillis(Map params) throws TemplateModelException {
+        Object ttl = params.get("ttl");
+        if (ttl == null) {
+            return 0;
+        }
+        Number seconds = ttl instanceof TemplateNumberModel ? ((TemplateNumberModel) ttl).getAsNumber()
+                : Double.valueOf(ttl.toString());
+        return (long) (seconds.doubleValue() * 1000);
+    }
+
+    private String getKey(Map params) throws TemplateModelException {
+        StringBuilder key = new StringBuilder(FragmentCache.escape(params.get("key").toString()));
+        Object vary = params.get("vary");
+        if (vary instanceof TemplateSequenceModel) {
+            TemplateSequenceModel values = (TemplateSequenceModel) vary;
+            for (int i = 0; i < values.size(); i++) {
+                key.append('/').append(FragmentCache.escape(String.valueOf(values.get(i))));
+            }
+        } else if (vary != null) {
+            key.append('/').append(FragmentCache.escape(vary.toString()));
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,260 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import org.javalite.activejdbc.Model;
+import org.javalite.activejdbc.Registry;
+import org.javalite.activeweb.ViewException;
+import org.javalite.common.Util;
+
+import java.io.Writer;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Superclass of Java classes generated from templates by {@link TemplateCompiler}. Generated classes are rendered
+ * by {@link CompiledTemplateManager}. Methods of this class are used by generated code only.
+ * <p></p>
+ * Values are converted to text by {@link ValueFormat}, with settings of the FreeMarker configuration of the manager.
+ * Properties of objects are read by getters compiled to lambdas on first use, so that reading a property costs
+ * about as much as a direct call. Attributes of ActiveJDBC models are read with <code>get(name)</code>, associations
+ * of models are not supported.
+ *
+ * @author Igor Polevoy
+ */
+public abstract class CompiledTemplate {
+
+    private static final Map<Class, Map<String, Function<Object, Object>>> getters = new ConcurrentHashMap<>();
+    private static final ThreadLocal<ValueFormat> valueFormat = new ThreadLocal<>();
+    private static final ThreadLocal<ContentWriters> contentWriters = ThreadLocal.withInitial(ContentWriters::new);
+
+    /**
+     * Renders this template.
+     *
+     * @param values values passed from controller.
+     * @param writer writer to write output to.
+     * @throws Exception if any
+     */
+    public abstract void render(Map<String, Object> values, Writer writer) throws Exception;
+
+    /**
+     * @return name of the template this class is generated from, such as "/books/index.ftl".
+     */
+    public abstract String getTemplateName();
+
+    /**
+     * Sets format of values for templates rendered by current thread.
+     *
+     * @param format format of values, null to reset after rendering.
+     */
+    static void setValueFormat(ValueFormat format) {
+        if (format == null) {
+            valueFormat.remove();
+            contentWriters.get().depth = 0;
+        } else {
+            valueFormat.set(format);
+        }
+    }
+
+    /**
+     * Writes value of an expression like <code>${book.title}</code>.
+     *
+     * @param path names of an expression, such as <code>{"book", "title"}</code>.
+     */
+    protected final void write(Writer writer, Map<String, Object> values, String[] path) throws Exception {
+        Object value = values.get(path[0]);
+        for (int i = 1; i < path.length && value != null; i++) {
+            value = property(value, path[i]);
+        }
+        if (value == null) {
+            throw new ViewException("The following has evaluated to null or missing: ${" + Util.join(path, ".")
+                    + "} in template " + getTemplateName());
+        }
+        if (value instanceof String) {
+            writer.write((String) value);
+            return;
+        }
+        ValueFormat format = valueFormat.get();
+        if (format == null) {
+            throw new ViewException("Template " + getTemplateName() + " must be rendered by " + CompiledTemplateManager.class.getName());
+        }
+        writer.write(format.format(value, Util.join(path, ".")));
+    }
+
+    /**
+     * Opens a writer for body of <code>&lt;@content for="name"&gt;</code>. Writers are reused by a thread.
+     */
+    protected final Writer contentWriter() {
+        return contentWriters.get().open();
+    }
+
+    /**
+     * Collects content of <code>&lt;@content for="name"&gt;</code> and closes its writer.
+     *
+     * @param writer writer returned by {@link #contentWriter()}.
+     */
+    protected final void content(String name, Writer writer) {
+        ContentTL.addContent(name, contentWriters.get().close());
+    }
+
+    /**
+     * Writes content collected for <code>&lt;@yield to="name"/&gt;</code>.
+     */
+    protected final void yieldContent(Writer writer, String name) throws Exception {
+        Map<String, List<String>> allContent = ContentTL.getAllContent();
+        if (allContent == null) {
+            throw new ViewException("Content for name: '" + name + "' is missing. " +
+                    "Ensure you have this tag <@content for=\"title\">... on page being rendered.");
+        }
+        List<String> contentList = allContent.get(name);
+        if (contentList != null) {
+            writer.write(Util.join(contentList, " "));
+        }
+    }
+
+    private static Object property(Object object, String name) {
+        if (object instanceof Map) {
+            return ((Map) object).get(name);
+        }
+        Map<String, Function<Object, Object>> classGetters = getters.get(object.getClass());
+        if (classGetters == null) {
+            classGetters = getters.computeIfAbsent(object.getClass(), c -> new ConcurrentHashMap<>());
+        }
+        Function<Object, Object> getter = classGetters.get(name);
+        if (getter == null) {
+            getter = getter(object.getClass(), name);
+            classGetters.put(name, getter);
+        }
+        return getter.apply(object);
+    }
+
+    /**
+     * Finds a getter, or a method with the name of the property. On ActiveJDBC models, attributes are read with
+     * {@link Model#get(String)} unless a subclass of {@link Model} declares such a method, same as in
+     * {@link ActiveWebObjectWrapper}.
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getter(Class clazz, String name) {
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        Method method = null;
+        for (String methodName : new String[]{"get" + suffix, "is" + suffix, name}) {
+            try {
+                method = clazz.getMethod(methodName);
+                break;
+            } catch (NoSuchMethodException ignore) {}
+        }
+        boolean declaredByModel = method != null && method.getDeclaringClass() != Model.class
+                && Model.class.isAssignableFrom(method.getDeclaringClass());
+        if (Model.class.isAssignableFrom(clazz) && !declaredByModel
+                && Registry.instance().getMetaModel(clazz).getAttributeNamesSkip().contains(name.toLowerCase())) {
+            return object -> ((Model) object).get(name);
+        }
+        if (method == null) {
+            throw new ViewException("No property '" + name + "' in " + clazz.getName());
+        }
+        return getter(method);
+    }
+
+    /**
+     * Compiles a getter to a lambda. Falls back to reflection for methods of classes that are not public or that
+     * are not visible from class loader of this class.
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getter(Method method) {
+        Class declaringClass = method.getDeclaringClass();
+        try {
+            if (Class.forName(declaringClass.getName(), false, CompiledTemplate.class.getClassLoader()) == declaringClass) {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                CallSite site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class), lookup.unreflect(method),
+                        MethodType.methodType(method.getReturnType(), declaringClass).wrap().changeReturnType(Object.class));
+                return (Function<Object, Object>) site.getTarget().invoke();
+            }
+        } catch (Throwable ignore) {} // falls back to reflection
+        method.setAccessible(true);
+        return object -> {
+            try {
+                return method.invoke(object);
+            } catch (InvocationTargetException e) {
+                throw new ViewException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new ViewException(e);
+            }
+        };
+    }
+
+    /**
+     * Writers for bodies of <code>&lt;@content&gt;</code>, one per level of nesting.
+     */
+    private static class ContentWriters {
+        private static final int MAX_RETAINED = 64 * 1024;
+
+        private final List<ContentWriter> writers = new ArrayList<>();
+        private int depth;
+
+        Writer open() {
+            if (depth == writers.size()) {
+                writers.add(new ContentWriter());
+            }
+            return writers.get(depth++);
+        }
+
+        String close() {
+            ContentWriter writer = writers.get(--depth);
+            String content = writer.builder.toString();
+            if (writer.builder.capacity() > MAX_RETAINED) {
+                writer.builder = new StringBuilder();
+            } else {
+                writer.builder.setLength(0);
+            }
+            return content;
+        }
+    }
+
+    private static class ContentWriter extends Writer {
+        private StringBuilder builder = new StringBuilder();
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            builder.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            builder.append(str, off, off + len);
+        }
+
+        @Override
+        public void write(int c) {
+            builder.append((char) c);
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+}
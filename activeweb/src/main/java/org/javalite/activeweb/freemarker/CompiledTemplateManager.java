@@ -0,0 +1,158 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import org.javalite.activeweb.Configuration;
+import org.javalite.activeweb.ViewException;
+import org.javalite.common.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.javalite.common.Util.blank;
+
+/**
+ * Renders templates compiled to Java classes by {@link TemplateCompiler}, and all other templates with FreeMarker.
+ * A page is rendered by a compiled class if both the page and its layout were compiled. To use, set property:
+ *
+ * <pre>
+ *     templateManager=org.javalite.activeweb.freemarker.CompiledTemplateManager
+ * </pre>
+ *
+ * Compiled classes are looked up in package from property <code>compiledTemplatesPackage</code>.
+ * When classes are reloaded in development (<code>active_reload</code>), all templates are rendered with FreeMarker,
+ * so that changes to templates are visible without a build. Compiled pages are always buffered before a layout,
+ * regardless of <code>streamLayouts</code>. Values are formatted with <code>number_format</code>,
+ * <code>boolean_format</code> and <code>locale</code> of the FreeMarker configuration, see {@link ValueFormat}.
+ *
+ * @author Igor Polevoy
+ */
+public class CompiledTemplateManager extends FreeMarkerTemplateManager {
+
+    private static final Object NOT_COMPILED = new Object();
+
+    private final String packageName = Configuration.getCompiledTemplatesPackage();
+    private final Map<String, Object> templates = new ConcurrentHashMap<>();
+    private volatile ValueFormat valueFormat;
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Override
+    public void merge(Map<String, Object> input, String template, String layout, String format, Writer writer) {
+        String templateName = blank(format) ? template + ".ftl" : template + "." + format + ".ftl";
+        CompiledTemplate pageTemplate = Configuration.activeReload() || getLayoutHead() != null ? null : find(templateName);
+        CompiledTemplate layoutTemplate = layout == null || pageTemplate == null ? null : find(layout + ".ftl");
+        if (pageTemplate == null || (layout != null && layoutTemplate == null)) {
+            super.merge(input, template, layout, format, writer);
+            return;
+        }
+
+        try {
+            logger.info("Rendering compiled template: '" + templateName + "' with layout: '" + layout + "'");
+            ContentTL.reset();
+            CompiledTemplate.setValueFormat(getValueFormat());
+            if (layoutTemplate == null) {
+                pageTemplate.render(input, writer);
+            } else {
+                StringWriter pageWriter = new StringWriter();
+                pageTemplate.render(input, pageWriter);
+
+                Map<String, Object> layoutValues = new HashMap<>();
+                layoutValues.put("page_content", pageWriter.toString());
+                Map<String, List<String>> assignedValues = ContentTL.getAllContent();
+                for (String name : assignedValues.keySet()) {
+                    layoutValues.put(name, Util.join(assignedValues.get(name), " "));
+                }
+                layoutTemplate.render(new LayeredMap(layoutValues, input), writer);
+            }
+        } catch (ViewException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ViewException(e);
+        } finally {
+            CompiledTemplate.setValueFormat(null);
+        }
+    }
+
+    /**
+     * @return format of values for current settings of configuration, which can be changed after this manager
+     * is created.
+     */
+    private ValueFormat getValueFormat() {
+        ValueFormat format = valueFormat;
+        if (format == null || !format.matches(getConfiguration())) {
+            valueFormat = format = new ValueFormat(getConfiguration());
+        }
+        return format;
+    }
+
+    /**
+     * @param templateName name of template, such as "/books/index.ftl".
+     * @return instance of compiled template, or null if template was not compiled.
+     */
+    private CompiledTemplate find(String templateName) {
+        Object template = templates.get(templateName);
+        if (template == null) {
+            String className = TemplateCompiler.className(packageName, templateName);
+            try {
+                template = Class.forName(className).newInstance();
+            } catch (ClassNotFoundException e) {
+                template = NOT_COMPILED;
+            } catch (Exception e) {
+                throw new ViewException("Failed to create compiled template " + className, e);
+            }
+            templates.put(templateName, template);
+        }
+        return template == NOT_COMPILED ? null : (CompiledTemplate) template;
+    }
+
+    /**
+     * Values of a layout: page content and content for yields, over values passed from controller, which are
+     * looked up on access rather than copied.
+     */
+    private static class LayeredMap extends AbstractMap<String, Object> {
+        private final Map<String, Object> values, parent;
+
+        LayeredMap(Map<String, Object> values, Map<String, Object> parent) {
+            this.values = values;
+            this.parent = parent;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return values.containsKey(key) ? values.get(key) : parent.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return values.containsKey(key) || parent.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> all = new HashMap<>(parent);
+            all.putAll(values);
+            return all.entrySet();
+        }
+    }
+}
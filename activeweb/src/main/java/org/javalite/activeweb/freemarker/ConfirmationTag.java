@@ -54,12 +54,12 @@ import java.util.Map;
  *
  * @author Igor Polevoy
  */
-public class ConfirmationTag extends FreeMarkerTag{
+public class ConfirmationTag extends StreamingFreeMarkerTag {
     @Override
-    protected void render(Map params, String body, Writer writer) throws Exception {
+    protected void writeStart(Map params, boolean hasBody, Writer writer) throws Exception {
 
         validateParamsPresence(params, "text", "form");
-        TagFactory tf = new TagFactory("a", body);
+        TagFactory tf = new TagFactory("a", null);
 
         tf.attribute("href", "#");
         String text = params.get("text").toString();
@@ -69,6 +69,11 @@ public class ConfirmationTag extends FreeMarkerTag{
         tf.attribute("onClick", "if(confirm('" + params.get("text") + "')) { $('#' + " + params.get("form") + ").submit(); return true; } else return false;");
 
         tf.addAttributesExcept(params, "text", "form");
-        tf.write(writer);
+        tf.writeStart(writer);
+    }
+
+    @Override
+    protected void writeEnd(Map params, boolean blankBody, Writer writer) throws Exception {
+        writer.write("</a>");
     }
 }
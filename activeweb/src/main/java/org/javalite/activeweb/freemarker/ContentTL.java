@@ -25,6 +25,7 @@ import java.util.Map;
  */
 public class ContentTL {
     private static ThreadLocal<Map<String, List<String>>> contentTL = new ThreadLocal<>();
+    private static ThreadLocal<Boolean> deferYields = new ThreadLocal<>();
 
     private ContentTL() {}
     
@@ -42,4 +43,16 @@ public class ContentTL {
         List<String> contentList = ContentTL.contentTL.get().get(name);
         contentList.add(content);
     }
+
+    /**
+     * @param defer true while a layout is rendered ahead of its page, so that yields leave placeholders
+     *              instead of content.
+     */
+    static void deferYields(boolean defer){
+        deferYields.set(defer);
+    }
+
+    static boolean yieldsDeferred(){
+        return Boolean.TRUE.equals(deferYields.get());
+    }
 }
\ No newline at end of file
@@ -25,7 +25,6 @@ import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 
-import static org.javalite.common.Util.blank;
 
 /**
  * This is a FreeMarker directive which is registered as  <code>&lt;@form... /&gt;</code> tag.
@@ -117,9 +116,9 @@ import static org.javalite.common.Util.blank;
  *
  * @author Igor Polevoy
  */
-public class FormTag  extends FreeMarkerTag{
+public class FormTag  extends StreamingFreeMarkerTag {
     @Override
-    protected void render(Map params, String body, Writer writer) throws Exception {
+    protected void writeStart(Map params, boolean hasBody, Writer writer) throws Exception {
 
         SimpleHash activeweb = (SimpleHash) get("activeweb");
         if(activeweb == null || !(params.containsKey("controller") || activeweb.toMap().containsKey("controller")))
@@ -144,11 +143,7 @@ public class FormTag  extends FreeMarkerTag{
             httpMethod = "post";
         }
 
-        if(blank(body)){
-            body = "&nbsp;";
-        }
-
-        TagFactory tf = new TagFactory("form", bodyPrefix + body);
+        TagFactory tf = new TagFactory("form", null);
 
         String action = Convert.toString(params.get("action"));
 
@@ -176,6 +171,15 @@ public class FormTag  extends FreeMarkerTag{
         tf.addAttributesExcept(params, "controller", "action", "method", "id", "html_id", "data");
         tf.textAttributes(Convert.toString(params.get("data")));
 
-        tf.write(writer);
+        tf.writeStart(writer);
+        writer.write(bodyPrefix);
+    }
+
+    @Override
+    protected void writeEnd(Map params, boolean blankBody, Writer writer) throws Exception {
+        if(blankBody){
+            writer.write("&nbsp;");
+        }
+        writer.write("</form>");
     }
 }
@@ -0,0 +1,198 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import org.javalite.activeweb.Configuration;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of fragments rendered by {@link CacheTag}. Size of the cache is limited by total length of
+ * fragments in characters, see property <code>fragmentCacheSize</code>. When the limit is reached, least recently
+ * used fragments are evicted.
+ * <p></p>
+ * Reads do not lock: a fragment is marked as used when it is read, and the cache is only locked to add or evict
+ * fragments. Fragments are kept in the order they were added. When space is needed, fragments are taken from
+ * the front: a fragment used since it was last looked at is moved to the back and unmarked, the first one
+ * that was not used is evicted. This approximates least recently used order at a constant cost per eviction.
+ * <p></p>
+ * Use this class from controllers to evict fragments whose data changed:
+ *
+ * <pre>
+ *     FragmentCache.evict("menu");
+ * </pre>
+ *
+ * @author Igor Polevoy
+ */
+public class FragmentCache {
+
+    private static final Map<String, Fragment> fragments = new ConcurrentHashMap<>();
+    private static final ArrayDeque<Fragment> order = new ArrayDeque<>();
+    private static long maxSize = Configuration.getFragmentCacheSize();
+    private static long size;
+
+    private FragmentCache() {}
+
+    /**
+     * @param key key of a fragment.
+     * @return content of a fragment, or null if not found or expired.
+     */
+    public static String get(String key) {
+        Fragment fragment = fragments.get(key);
+        if (fragment == null) {
+            return null;
+        }
+        if (fragment.expired()) {
+            expire(key, fragment);
+            return null;
+        }
+        if (!fragment.used) {
+            fragment.used = true;
+        }
+        return fragment.content;
+    }
+
+    /**
+     * Adds a fragment to cache. Fragments larger than size of cache are not cached.
+     *
+     * @param key key of a fragment.
+     * @param content content of a fragment.
+     * @param ttlMillis time to live in milliseconds, zero or less to keep a fragment until it is evicted.
+     */
+    public static synchronized void put(String key, String content, long ttlMillis) {
+        remove(key);
+        if (content.length() > maxSize) {
+            return;
+        }
+        Fragment fragment = new Fragment(key, content, ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : Long.MAX_VALUE);
+        fragments.put(key, fragment);
+        order.addLast(fragment);
+        size += content.length();
+        trim();
+        if (order.size() > 2 * fragments.size() + 16) {
+            order.removeIf(queued -> fragments.get(queued.key) != queued); // drops replaced and removed fragments
+        }
+    }
+
+    /**
+     * Evicts a fragment and its versions for different values of <code>vary</code> of {@link CacheTag}.
+     *
+     * @param key key of a fragment, such as "menu" to evict "menu", "menu/en" and "menu/fr", but not "menus".
+     * @return number of fragments evicted.
+     */
+    public static synchronized int evict(String key) {
+        String escaped = escape(key);
+        String versions = escaped + '/';
+        int count = 0;
+        Iterator<Map.Entry<String, Fragment>> iterator = fragments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Fragment> entry = iterator.next();
+            if (entry.getKey().equals(escaped) || entry.getKey().startsWith(versions)) {
+                size -= entry.getValue().content.length();
+                iterator.remove();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Escapes a part of a key, so that parts joined with '/' cannot be confused with other parts.
+     *
+     * @param part key or value of <code>vary</code>.
+     * @return part with '%' and '/' escaped.
+     */
+    static String escape(String part) {
+        if (part.indexOf('%') == -1 && part.indexOf('/') == -1) {
+            return part;
+        }
+        return part.replace("%", "%25").replace("/", "%2F");
+    }
+
+    /**
+     * Evicts all fragments.
+     */
+    public static synchronized void clear() {
+        fragments.clear();
+        order.clear();
+        size = 0;
+    }
+
+    /**
+     * @return total length of cached fragments in characters.
+     */
+    public static synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Sets maximum total length of cached fragments in characters, evicting fragments if needed.
+     *
+     * @param maxSize maximum total length of fragments, zero to disable caching.
+     */
+    public static synchronized void setMaxSize(long maxSize) {
+        FragmentCache.maxSize = maxSize;
+        trim();
+    }
+
+    private static void trim() {
+        while (size > maxSize) {
+            Fragment fragment = order.pollFirst();
+            if (fragments.get(fragment.key) != fragment) {
+                continue; // replaced or removed already
+            }
+            if (fragment.used) {
+                fragment.used = false;
+                order.addLast(fragment);
+            } else {
+                remove(fragment.key);
+            }
+        }
+    }
+
+    private static synchronized void expire(String key, Fragment fragment) {
+        if (fragments.remove(key, fragment)) {
+            size -= fragment.content.length();
+        }
+    }
+
+    private static void remove(String key) {
+        Fragment fragment = fragments.remove(key);
+        if (fragment != null) {
+            size -= fragment.content.length();
+        }
+    }
+
+    private static class Fragment {
+        private final String key;
+        private final String content;
+        private final long expiresAt;
+        private volatile boolean used;
+
+        Fragment(String key, String content, long expiresAt) {
+            this.key = key;
+            this.content = content;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean expired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
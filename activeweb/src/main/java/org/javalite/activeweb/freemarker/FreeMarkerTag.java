@@ -24,7 +24,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.*;
@@ -49,12 +48,14 @@ public abstract class FreeMarkerTag implements TemplateDirectiveModel {
 
     public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body) throws TemplateException, IOException {
         FreeMarkerTL.setEnvironment(env);
-        StringWriter sw = new StringWriter();
+        String content = "";
         if (body != null) {
+            StringWriter sw = new StringWriter();
             body.render(sw);
+            content = sw.toString();
         }
         try{
-            render(params, sw.toString(), env.getOut());
+            render(params, content, env.getOut());
         }catch (ViewException e){
             throw e;
         }catch(Exception e){
@@ -132,17 +133,35 @@ public abstract class FreeMarkerTag implements TemplateDirectiveModel {
 
     /**
      * Processes text as a FreeMarker template. Usually used to process an inner body of a tag.
+     * Text is parsed on every call, because it may contain data of a request, such as a rendered body.
+     * Use {@link #process(String, String, Map, Writer)} for templates that do not change.
      *
      * @param text text of a template.
      * @param params map with parameters for processing. 
      * @param writer writer to write output to.
      */
     protected void process(String text, Map params, Writer writer){
+        process(null, text, params, writer);
+    }
+
+    /**
+     * Processes text as a FreeMarker template. Compiled template is cached under class of this tag and a provided
+     * key, so that text is parsed once and then rendered many times. Use this method for templates that are part of
+     * a tag, such as a constant. Text must be the same every time the same key is used, never pass text
+     * containing data of a request.
+     *
+     * @param key name of a template of this tag, or null to not cache it.
+     * @param text text of a template.
+     * @param params map with parameters for processing.
+     * @param writer writer to write output to.
+     */
+    protected void process(String key, String text, Map params, Writer writer){
 
         try{
-            Template t = new Template("temp", new StringReader(text), FreeMarkerTL.getEnvironment().getConfiguration());
+            Template t = MeteredConfiguration.getInlineTemplate(FreeMarkerTL.getEnvironment().getConfiguration(),
+                    key == null ? null : getClass().getName() + '#' + key, text);
             t.process(params, writer);
-        }catch(Exception e){          
+        }catch(Exception e){
             throw new ViewException(e);
         }
     }
@@ -15,7 +15,9 @@ limitations under the License.
 */
 package org.javalite.activeweb.freemarker;
 
+import freemarker.core.Environment;
 import freemarker.template.*;
+import freemarker.template.utility.NullWriter;
 import org.javalite.activeweb.InitException;
 import org.javalite.activeweb.TemplateManager;
 import org.javalite.activeweb.ViewException;
@@ -26,9 +28,14 @@ import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletContext;
 import java.io.*;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import static org.javalite.common.Util.blank;
 
@@ -37,17 +44,25 @@ import static org.javalite.common.Util.blank;
  */
 public class FreeMarkerTemplateManager extends TemplateManager {
 
-    private Configuration config;
+    private MeteredConfiguration config;
     private String defaultLayout;
 
     private String location;
+    private ServletContext servletContext;
+    private boolean streamLayouts = org.javalite.activeweb.Configuration.streamLayouts();
 
     private Logger logger = LoggerFactory.getLogger(getClass());
 
     public FreeMarkerTemplateManager() {
-        config = new Configuration();
-        config.setObjectWrapper(new DefaultObjectWrapper());
+        config = new MeteredConfiguration();
+        config.setObjectWrapper(new ActiveWebObjectWrapper());
         config.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+        if(org.javalite.activeweb.Configuration.getEnv().equals("development")){
+            // checks modification time of a template on each use, re-parsing only templates that changed
+            config.setTemplateUpdateDelayMilliseconds(0);
+        }
+        configureTemplateCache(org.javalite.activeweb.Configuration.getTemplateCacheStorage(),
+                org.javalite.activeweb.Configuration.getTemplateUpdateDelay());
         config.setSharedVariable("link_to", new LinkToTag());
         config.setSharedVariable("form", new FormTag());
         config.setSharedVariable("content", new ContentForTag());
@@ -60,6 +75,7 @@ public class FreeMarkerTemplateManager extends TemplateManager {
         config.setSharedVariable("select", new SelectTag());
         config.setSharedVariable("message", new MessageTag());
         config.setSharedVariable("csrf_token", new CSRFTokenTag());
+        config.setSharedVariable("cache", new CacheTag());
 
         AbstractFreeMarkerConfig freeMarkerConfig = org.javalite.activeweb.Configuration.getFreeMarkerConfig();
         if(freeMarkerConfig != null){
@@ -79,18 +95,23 @@ public class FreeMarkerTemplateManager extends TemplateManager {
         String templateName = blank(format)? template + ".ftl" : template + "." + format + ".ftl";
         try {
             logger.info("Rendering template: " + getTemplateDescription(templateName, layout));
-            if(org.javalite.activeweb.Configuration.getEnv().equals("development")){
-                config.clearTemplateCache();
-            }
             ContentTL.reset();
             Template pageTemplate = config.getTemplate(templateName);
 
-            if(layout == null){//no layout
-                pageTemplate.process(input, writer);
+            StreamingLayout flushedLayout = (StreamingLayout) getLayoutHead();
+            if(flushedLayout != null){ // head of layout was already sent to client
+                setLayoutHead(null);
+                mergeStreaming(input, pageTemplate, flushedLayout, writer);
+                FreeMarkerTL.setEnvironment(null);
+            }else if(layout == null){//no layout
+                config.process(pageTemplate, input, writer);
+            }else if(streamLayouts){
+                mergeStreaming(input, pageTemplate, layout, writer);
+                FreeMarkerTL.setEnvironment(null);
             }else{ // with layout
                  //Generate the template itself
                 StringWriter pageWriter = new StringWriter();
-                pageTemplate.process(input, pageWriter);
+                config.process(pageTemplate, input, pageWriter);
 
                 Map<String, Object> values = new HashMap<>(input);
                 values.put("page_content", pageWriter.toString());
@@ -100,7 +121,7 @@ public class FreeMarkerTemplateManager extends TemplateManager {
                     values.put(name, Util.join(assignedValues.get(name), " "));
                 }
                 Template layoutTemplate = config.getTemplate(layout + ".ftl");
-                layoutTemplate.process(values, writer);
+                config.process(layoutTemplate, values, writer);
                 FreeMarkerTL.setEnvironment(null);
             }
         }
@@ -117,12 +138,93 @@ public class FreeMarkerTemplateManager extends TemplateManager {
     }
 
 
+    /**
+     * Renders the layout first, then streams the page into the writer at the <code>${page_content}</code> placeholder.
+     * Output is buffered only from the first <code>&lt;@yield&gt;</code> located before <code>${page_content}</code>,
+     * because such yields need content collected from the page.
+     */
+    private void mergeStreaming(Map<String, Object> input, Template pageTemplate, String layout, Writer writer)
+            throws IOException, TemplateException {
+        StreamingLayout streamingLayout = renderLayout(input, layout);
+        streamingLayout.writeHead(writer);
+        mergeStreaming(input, pageTemplate, streamingLayout, writer);
+    }
+
+    /**
+     * Renders the page into a layout, part of whose head has already been written.
+     */
+    private void mergeStreaming(Map<String, Object> input, Template pageTemplate, StreamingLayout streamingLayout, Writer writer)
+            throws IOException, TemplateException {
+        if (streamingLayout.writeHead(writer) && streamingLayout.hasPageContent()) {
+            config.process(pageTemplate, input, writer);
+        } else {
+            Writer pageWriter = streamingLayout.hasPageContent() ? new StringWriter() : NullWriter.INSTANCE;
+            config.process(pageTemplate, input, pageWriter);
+            streamingLayout.writeRestOfHead(writer, ContentTL.getAllContent());
+            if (streamingLayout.hasPageContent()) {
+                writer.write(pageWriter.toString());
+            }
+        }
+        streamingLayout.writeTail(writer, ContentTL.getAllContent());
+    }
+
+    private StreamingLayout renderLayout(Map<String, Object> input, String layout) throws IOException, TemplateException {
+        StringWriter layoutWriter = new StringWriter();
+        Template layoutTemplate = config.getTemplate(layout + ".ftl");
+        Environment env = layoutTemplate.createProcessingEnvironment(input, layoutWriter);
+        env.setVariable("page_content", new SimpleScalar(StreamingLayout.PAGE_CONTENT));
+        ContentTL.deferYields(true);
+        long start = System.nanoTime();
+        try {
+            env.process();
+        } finally {
+            ContentTL.deferYields(false);
+            config.rendered(layoutTemplate, System.nanoTime() - start);
+        }
+        return new StreamingLayout(layoutWriter.toString());
+    }
+
+    @Override
+    public boolean mergeLayoutHead(Map<String, Object> values, String layout, Writer writer) {
+        try {
+            logger.info("Rendering head of layout: '" + layout + ".ftl'");
+            StreamingLayout streamingLayout = renderLayout(values, layout);
+            streamingLayout.writeHead(writer);
+            setLayoutHead(streamingLayout);
+            FreeMarkerTL.setEnvironment(null);
+            return true;
+        } catch (TemplateNotFoundException e) {
+            throw new ViewMissingException("Failed to render layout: '" + layout + ".ftl'. " + e.getMessage());
+        } catch (ViewException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ViewException("Failed to render layout: '" + layout + ".ftl'", e);
+        }
+    }
+
+    @Override
+    public void completeLayout(Writer writer) {
+        StreamingLayout streamingLayout = (StreamingLayout) getLayoutHead();
+        if (streamingLayout == null) {
+            return;
+        }
+        setLayoutHead(null);
+        try {
+            Map<String, List<String>> noContent = new HashMap<>();
+            streamingLayout.writeRestOfHead(writer, noContent);
+            streamingLayout.writeTail(writer, noContent);
+        } catch (Exception e) {
+            throw new ViewException(e);
+        }
+    }
+
     private String getTemplateDescription(String templateName, String layout) {
         return "'" + templateName + (layout == null ? "' without layout" : "' with layout: '" + layout + ".ftl'") + ". ";
     }
     
     @Override
     public void setServletContext(ServletContext ctx) {
+        servletContext = ctx;
         if(location == null)
             config.setServletContextForTemplateLoading(ctx, "WEB-INF/views/");
     }
@@ -141,6 +243,137 @@ public class FreeMarkerTemplateManager extends TemplateManager {
         defaultLayout = layoutPath;
     }
 
+    /**
+     * Parses all templates from the template location in parallel, putting them into the template cache.
+     * Logs total time and the slowest templates.
+     *
+     * @throws InitException if a template fails to parse.
+     */
+    @Override
+    public void warmUp() {
+        long start = System.currentTimeMillis();
+        List<String> names = templateNames();
+        Map<String, Long> parseMillis = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.submit(() -> names.parallelStream().forEach(name -> parseMillis.put(name, warmUp(name)))).get();
+        } catch (ExecutionException e) {
+            throw new InitException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InitException(e);
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Map.Entry<String, Long>> slowest = new ArrayList<>(parseMillis.entrySet());
+        slowest.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        logger.info("Parsed " + names.size() + " templates in " + (System.currentTimeMillis() - start)
+                + " milliseconds, slowest: " + slowest.subList(0, Math.min(5, slowest.size())));
+    }
+
+    private long warmUp(String name) {
+        long start = System.nanoTime();
+        try {
+            config.getTemplate(name);
+        } catch (Exception e) {
+            throw new InitException("Failed to parse template: '" + name + "'", e);
+        }
+        return (System.nanoTime() - start) / 1000000;
+    }
+
+    private List<String> templateNames() {
+        List<String> names = new ArrayList<>();
+        if (location != null) {
+            Path root = Paths.get(location);
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.filter(path -> path.toString().endsWith(".ftl"))
+                        .forEach(path -> names.add(root.relativize(path).toString().replace(File.separatorChar, '/')));
+            } catch (IOException e) {
+                throw new InitException(e);
+            }
+        } else if (servletContext != null) {
+            collectTemplateNames("/WEB-INF/views/", names);
+        }
+        return names;
+    }
+
+    private void collectTemplateNames(String path, List<String> names) {
+        Set<String> paths = servletContext.getResourcePaths(path);
+        if (paths == null) {
+            return;
+        }
+        for (String resource : paths) {
+            if (resource.endsWith("/")) {
+                collectTemplateNames(resource, names);
+            } else if (resource.endsWith(".ftl")) {
+                names.add(resource.substring("/WEB-INF/views/".length()));
+            }
+        }
+    }
+
+    /**
+     * Configures storage of the template cache and how often templates are checked for changes.
+     *
+     * @param cacheStorage storage of the template cache in FreeMarker <code>cache_storage</code> setting format,
+     *                     such as <code>strong:500, soft:2000</code>, <code>soft</code> or <code>strong</code>.
+     *                     <code>null</code> to keep FreeMarker default.
+     * @param updateDelay time after which a cached template is checked for changes, in FreeMarker
+     *                    <code>template_update_delay</code> setting format, such as <code>5s</code>,
+     *                    <code>500ms</code> or <code>1h</code>. <code>null</code> to keep the default: 0 in development,
+     *                    FreeMarker default elsewhere.
+     */
+    public void configureTemplateCache(String cacheStorage, String updateDelay) {
+        try {
+            if (!blank(cacheStorage)) {
+                config.setSetting(Configuration.CACHE_STORAGE_KEY, cacheStorage);
+            }
+            if (!blank(updateDelay)) {
+                config.setSetting(Configuration.TEMPLATE_UPDATE_DELAY_KEY, updateDelay);
+            }
+        } catch (TemplateException e) {
+            throw new InitException(e);
+        }
+    }
+
+    /**
+     * Returns cache and rendering counters collected since start or the last call to
+     * {@link #resetTemplateStatistics()}, keyed by template name.
+     *
+     * @return read-only map of template statistics keyed by template name.
+     */
+    public Map<String, TemplateStatistics> getTemplateStatistics() {
+        return config.getStatistics();
+    }
+
+    /**
+     * Clears all template statistics.
+     */
+    public void resetTemplateStatistics() {
+        config.resetStatistics();
+    }
+
+    /**
+     * Sets streaming mode for layouts. In this mode, a layout is rendered before the page, and the page is
+     * written directly to the output in place of <code>${page_content}</code> instead of being buffered in memory.
+     * The following apply in this mode:
+     *
+     * <ul>
+     *     <li>Content of <code>&lt;@content&gt;</code> sections is available in a layout only through
+     *     <code>&lt;@yield&gt;</code> tags, not as variables.</li>
+     *     <li>Output is buffered from the first <code>&lt;@yield&gt;</code> located before <code>${page_content}</code>,
+     *     so layouts without yields in the head stream the entire page.</li>
+     *     <li>If a page fails to render, the top of the layout might have already been written to the client.</li>
+     * </ul>
+     *
+     * Default value is taken from property <code>streamLayouts</code> in <code>activeweb.properties</code>.
+     *
+     * @param streamLayouts true to stream pages into layouts, false to buffer pages before rendering a layout.
+     */
+    public void setStreamLayouts(boolean streamLayouts) {
+        this.streamLayouts = streamLayouts;
+    }
+
 
 
     @Override
@@ -153,6 +386,13 @@ public class FreeMarkerTemplateManager extends TemplateManager {
     }
 
 
+    /**
+     * @return FreeMarker configuration of this manager.
+     */
+    MeteredConfiguration getConfiguration() {
+        return config;
+    }
+
     /**
      * Registers an application-specific tag.
      *
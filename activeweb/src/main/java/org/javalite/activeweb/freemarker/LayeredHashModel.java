@@ -0,0 +1,87 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import freemarker.core.Environment;
+import freemarker.template.*;
+
+import java.util.*;
+
+/**
+ * Data model for templates rendered from within another template, such as partials. Variables put into this model
+ * overlay variables of the parent environment, which are looked up on access rather than copied.
+ *
+ * @author Igor Polevoy
+ */
+class LayeredHashModel implements TemplateHashModelEx {
+
+    private final Environment parent;
+    private final Map<String, TemplateModel> variables = new HashMap<>();
+
+    LayeredHashModel(Environment parent) {
+        this.parent = parent;
+    }
+
+    void put(String name, TemplateModel value) {
+        variables.put(name, value);
+    }
+
+    /**
+     * @param params parameters of a directive, values are instances of {@link TemplateModel}.
+     */
+    void putAll(Map params) {
+        for (Object name : params.keySet()) {
+            variables.put(name.toString(), (TemplateModel) params.get(name));
+        }
+    }
+
+    @Override
+    public TemplateModel get(String key) throws TemplateModelException {
+        TemplateModel value = variables.get(key);
+        return value != null || variables.containsKey(key) ? value : parent.getVariable(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return false;
+    }
+
+    @Override
+    public int size() throws TemplateModelException {
+        return names().size();
+    }
+
+    @Override
+    public TemplateCollectionModel keys() throws TemplateModelException {
+        return new SimpleCollection(names(), parent.getObjectWrapper());
+    }
+
+    @Override
+    public TemplateCollectionModel values() throws TemplateModelException {
+        List<TemplateModel> values = new ArrayList<>();
+        for (Object name : names()) {
+            values.add(get(name.toString()));
+        }
+        return new SimpleCollection(values, parent.getObjectWrapper());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set names() throws TemplateModelException {
+        Set names = new HashSet(parent.getKnownVariableNames());
+        names.addAll(variables.keySet());
+        return names;
+    }
+}
@@ -24,6 +24,7 @@ import freemarker.template.*;
 
 import java.io.Writer;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.javalite.common.Util.blank;
@@ -176,9 +177,9 @@ import static org.javalite.common.Util.blank;
  *
  * @author Igor Polevoy
  */
-public class LinkToTag extends FreeMarkerTag {
+public class LinkToTag extends StreamingFreeMarkerTag {
     @Override
-    protected void render(Map params, String body, Writer writer) throws Exception {
+    protected void writeStart(Map params, boolean hasBody, Writer writer) throws Exception {
 
         String controller;
         Boolean restful;
@@ -202,7 +203,7 @@ public class LinkToTag extends FreeMarkerTag {
             throw new IllegalArgumentException("'controller' attribute cannot have dots in value, use slashes: '/'");
         }
 
-        if (blank(body))
+        if (!hasBody)
             throw new IllegalArgumentException("must provide body text");
 
         if (params.get("query_params") != null && params.get("query_string") != null) {
@@ -220,7 +221,7 @@ public class LinkToTag extends FreeMarkerTag {
 
         boolean methodGET = true;
 
-        TagFactory tf = new TagFactory("a", body);
+        TagFactory tf = new TagFactory("a", null);
         tf.attribute("href", href);
         if (params.containsKey("destination") && params.get("destination") != null) {
             tf.attribute("data-destination", params.get("destination").toString());
@@ -277,7 +278,20 @@ public class LinkToTag extends FreeMarkerTag {
             tf.textAttributes(params.get("data").toString());
         }
 
-        writer.write(tf.toString());
+        tf.writeStart(writer);
+    }
+
+    @Override
+    protected boolean requiresBody() {
+        return true;
+    }
+
+    @Override
+    protected void writeEnd(Map params, boolean blankBody, Writer writer) throws Exception {
+        if (blankBody)
+            throw new IllegalArgumentException("must provide body text");
+
+        writer.write("</a>");
     }
 
     private Map getQueryParams(Map params) throws TemplateModelException {
@@ -289,7 +303,7 @@ public class LinkToTag extends FreeMarkerTag {
 
         TemplateCollectionModel keys = modelEx.keys();
         TemplateModelIterator keysIt = keys.iterator();
-        Map queryParams = new HashMap();
+        Map queryParams = new LinkedHashMap();
         while (keysIt.hasNext()) {
             TemplateModel key = keysIt.next();
             queryParams.put(key.toString(), modelEx.get(key.toString()).toString());
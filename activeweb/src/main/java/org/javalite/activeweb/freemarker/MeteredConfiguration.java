@@ -0,0 +1,151 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import freemarker.cache.MruCacheStorage;
+import freemarker.core.Environment;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FreeMarker configuration that collects {@link TemplateStatistics}. All template lookups, including those of
+ * <code>#include</code> and <code>#import</code> directives, go through
+ * {@link #getTemplate(String, Locale, Object, String, boolean, boolean)}.
+ * <p></p>
+ * Also caches templates compiled by tags from text of their own, see
+ * {@link FreeMarkerTag#process(String, String, Map, Writer)}. Templates are cached under keys given by tags, never
+ * under their text, so that text containing data of requests is not kept in memory.
+ *
+ * @author Igor Polevoy
+ */
+class MeteredConfiguration extends Configuration {
+
+    private static final int INLINE_TEMPLATES_STRONG = 100, INLINE_TEMPLATES_SOFT = 1000;
+
+    private final Map<String, TemplateStatistics> statistics = new ConcurrentHashMap<>();
+    private final MruCacheStorage inlineTemplates = new MruCacheStorage(INLINE_TEMPLATES_STRONG, INLINE_TEMPLATES_SOFT);
+    private final AtomicLong inlineTemplateHits = new AtomicLong(), inlineTemplateMisses = new AtomicLong();
+
+    @SuppressWarnings("deprecation")
+    MeteredConfiguration() {
+        super();
+    }
+
+    @Override
+    public Template getTemplate(String name, Locale locale, Object customLookupCondition, String encoding,
+                                boolean parseAsFTL, boolean ignoreMissing) throws IOException {
+        long start = System.nanoTime();
+        Template template = super.getTemplate(name, locale, customLookupCondition, encoding, parseAsFTL, ignoreMissing);
+        if (template != null) {
+            statistics(template).lookedUp(template, System.nanoTime() - start);
+        }
+        return template;
+    }
+
+    /**
+     * Compiles a template from text, reusing a template compiled before under the same key.
+     *
+     * @param key stable key of a template in cache, such as class name of a tag and name of its template,
+     *            or null to compile text without caching it.
+     * @param text source of the template, only parsed if not found in cache.
+     * @return compiled template.
+     */
+    static Template getInlineTemplate(Configuration configuration, String key, String text) throws IOException {
+        if (key == null || !(configuration instanceof MeteredConfiguration)) {
+            return new Template("temp", new StringReader(text), configuration);
+        }
+        MeteredConfiguration metered = (MeteredConfiguration) configuration;
+        Template template;
+        synchronized (metered.inlineTemplates) {
+            template = (Template) metered.inlineTemplates.get(key);
+        }
+        if (template != null) {
+            metered.inlineTemplateHits.incrementAndGet();
+            return template;
+        }
+        metered.inlineTemplateMisses.incrementAndGet();
+        template = new Template("temp", new StringReader(text), configuration);
+        synchronized (metered.inlineTemplates) {
+            metered.inlineTemplates.put(key, template);
+        }
+        return template;
+    }
+
+    /**
+     * @return number of times a template compiled from text was found in cache.
+     */
+    long getInlineTemplateHits() {
+        return inlineTemplateHits.get();
+    }
+
+    /**
+     * @return number of times a template compiled from text was compiled and cached.
+     */
+    long getInlineTemplateMisses() {
+        return inlineTemplateMisses.get();
+    }
+
+    /**
+     * Renders a template from a tag, recording its render time if the environment is configured by ActiveWeb.
+     */
+    static void process(Environment env, Template template, Object dataModel, Writer writer) throws TemplateException, IOException {
+        if (env.getConfiguration() instanceof MeteredConfiguration) {
+            ((MeteredConfiguration) env.getConfiguration()).process(template, dataModel, writer);
+        } else {
+            template.process(dataModel, writer);
+        }
+    }
+
+    /**
+     * Renders a template and records its render time.
+     */
+    void process(Template template, Object dataModel, Writer writer) throws TemplateException, IOException {
+        long start = System.nanoTime();
+        try {
+            template.process(dataModel, writer);
+        } finally {
+            statistics(template).rendered(System.nanoTime() - start);
+        }
+    }
+
+    void rendered(Template template, long nanos) {
+        statistics(template).rendered(nanos);
+    }
+
+    Map<String, TemplateStatistics> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    void resetStatistics() {
+        statistics.clear();
+    }
+
+    private TemplateStatistics statistics(Template template) {
+        TemplateStatistics templateStatistics = statistics.get(template.getName());
+        return templateStatistics != null ? templateStatistics
+                : statistics.computeIfAbsent(template.getName(), TemplateStatistics::new);
+    }
+}
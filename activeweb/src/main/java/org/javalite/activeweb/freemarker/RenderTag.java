@@ -23,9 +23,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Required attribute: partial
@@ -62,31 +60,59 @@ public class RenderTag implements TemplateDirectiveModel {
         LOGGER.debug("rendering: " + partialPath + ".ftl" );
 
         if(!params.containsKey("collection")){
-            SimpleHash envValues = getHash(env);
-            envValues.putAll(params);
-            partialTemplate.process(envValues, env.getOut());
+            LayeredHashModel model = new LayeredHashModel(env);
+            model.putAll(params);
+            MeteredConfiguration.process(env, partialTemplate, model, env.getOut());
         }else{
-            //TODO: check the type
             if(params.get("collection") == null){
                 throw new IllegalArgumentException("collection must be provided!");
             }
-            List collection = ((SimpleSequence)params.get("collection")).toList();
-            for(int i = 0; i < collection.size(); i++){
-                SimpleHash hash = getHash(env);
-                hash.putAll(params);
-                hash.put( partialName, collection.get(i));
-                hash.put( partialName + "_counter", i);
-                hash.put( "first", i == 0);
-                hash.put( "last", i == collection.size()  - 1);
-                partialTemplate.process(hash, env.getOut());
-
-                if(i < collection.size() - 1 && spacerTemplate != null){
-                    spacerTemplate.process(hash, env.getOut());
+            Object collection = params.get("collection");
+            TemplateModelIterator iterator;
+            if (collection instanceof TemplateSequenceModel) {
+                iterator = new SequenceIterator((TemplateSequenceModel) collection);
+            } else if (collection instanceof TemplateCollectionModel) {
+                iterator = ((TemplateCollectionModel) collection).iterator();
+            } else {
+                throw new IllegalArgumentException("collection must be a list or other collection");
+            }
+            LayeredHashModel model = new LayeredHashModel(env);
+            model.putAll(params);
+            boolean hasNext = iterator.hasNext();
+            for(int i = 0; hasNext; i++){
+                model.put(partialName, iterator.next());
+                hasNext = iterator.hasNext(); // items of a collection are not counted up front
+                model.put(partialName + "_counter", new SimpleNumber(i));
+                model.put("first", i == 0 ? TemplateBooleanModel.TRUE : TemplateBooleanModel.FALSE);
+                model.put("last", hasNext ? TemplateBooleanModel.FALSE : TemplateBooleanModel.TRUE);
+                MeteredConfiguration.process(env, partialTemplate, model, env.getOut());
+
+                if(hasNext && spacerTemplate != null){
+                    MeteredConfiguration.process(env, spacerTemplate, model, env.getOut());
                 }
             }
         }
     }
 
+    private static class SequenceIterator implements TemplateModelIterator {
+        private final TemplateSequenceModel sequence;
+        private int index;
+
+        SequenceIterator(TemplateSequenceModel sequence) {
+            this.sequence = sequence;
+        }
+
+        @Override
+        public TemplateModel next() throws TemplateModelException {
+            return sequence.get(index++);
+        }
+
+        @Override
+        public boolean hasNext() throws TemplateModelException {
+            return index < sequence.size();
+        }
+    }
+
     /**
      *
      * @param containerName - name of the container template.
@@ -111,13 +137,4 @@ public class RenderTag implements TemplateDirectiveModel {
 
         return templatePath;
     }
-
-    private SimpleHash getHash(Environment env) throws TemplateModelException {
-        Set names = env.getKnownVariableNames();
-        SimpleHash simpleHash = new SimpleHash();
-        for(Object name: names){
-            simpleHash.put(name.toString(),env.getVariable(name.toString()));
-        }
-        return simpleHash;
-    }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package org.javalite.activeweb.freemarker;
 
 import freemarker.template.SimpleSequence;
+import freemarker.template.TemplateModelException;
 import org.javalite.activeweb.ViewException;
 
 import java.io.Writer;
@@ -59,33 +60,26 @@ import java.util.Map;
  *
  * @author Igor Polevoy: 4/12/12 1:13 PM
  */
-public class SelectTag extends FreeMarkerTag {
+public class SelectTag extends StreamingFreeMarkerTag {
 
     @Override
-    protected void render(Map params, String body, Writer writer) throws Exception {
+    protected void writeStart(Map params, boolean hasBody, Writer writer) throws Exception {
 
-        validateParamsPresence(params, "list");
-
-        Object listObj = params.get("list");
-
-        if (!(listObj instanceof SimpleSequence)) {
-            throw new ViewException("Mandatory parameter 'list' must be java.util.List");
-        }
+        //doing verification before writing to writer so that not to have a partial write.
+        getOptions(params);
 
-        SimpleSequence sequence = (SimpleSequence) listObj;
-
-        List options = sequence.toList();
-        //doing verification in this loop before writing to writer so that not to have a partial write.
-        for(Object item: options){
-            if(!(item instanceof SelectOption)){
-                throw new ViewException("Must place " + SelectOption.class.getName() + " instances into select tag");
-            }
+        TagFactory selectTf = new TagFactory("select", null);
+        selectTf.addAttributesExcept(params, "list", "data");
+        if(params.containsKey("data")){
+            selectTf.textAttributes(params.get("data").toString());
         }
+        selectTf.writeStart(writer);
+    }
 
+    @Override
+    protected void writeEnd(Map params, boolean blankBody, Writer writer) throws Exception {
 
-        StringBuffer optionsBuffer  = new StringBuffer();
-
-        for(Object o: options){
+        for(Object o: getOptions(params)){
             SelectOption option = (SelectOption) o;
             TagFactory tf = new TagFactory("option", option.getLabel());
             tf.attribute("value", option.getValue());
@@ -97,15 +91,28 @@ public class SelectTag extends FreeMarkerTag {
             if(option.isSelected()){
                 tf.attribute("selected", "true");
             }
-            optionsBuffer.append(tf.toString());
+            tf.write(writer);
         }
+        writer.write("</select>");
+    }
 
-        TagFactory selectTf = new TagFactory("select", body + optionsBuffer);
-        selectTf.addAttributesExcept(params, "list", "data");
-        if(params.containsKey("data")){
-            selectTf.textAttributes(params.get("data").toString());
+    private List getOptions(Map params) throws TemplateModelException {
+        validateParamsPresence(params, "list");
+
+        Object listObj = params.get("list");
+
+        if (!(listObj instanceof SimpleSequence)) {
+            throw new ViewException("Mandatory parameter 'list' must be java.util.List");
         }
-        selectTf.write(writer);
 
+        SimpleSequence sequence = (SimpleSequence) listObj;
+
+        List options = sequence.toList();
+        for(Object item: options){
+            if(!(item instanceof SelectOption)){
+                throw new ViewException("Must place " + SelectOption.class.getName() + " instances into select tag");
+            }
+        }
+        return options;
     }
 }
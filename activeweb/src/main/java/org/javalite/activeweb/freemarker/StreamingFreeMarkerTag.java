@@ -0,0 +1,193 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import freemarker.core.Environment;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
+import org.javalite.activeweb.ViewException;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Map;
+
+import static org.javalite.common.Util.blank;
+
+/**
+ * Superclass for tags that surround their body with markup. Unlike {@link FreeMarkerTag}, the body of the tag
+ * is not buffered: a tag writes its start, the body renders directly into the output, then the tag writes its end.
+ * This saves copying of body content, which multiplies for nested tags.
+ * <p></p>
+ * A tag that {@link #requiresBody() requires a body} fails on a blank body before anything is written: its start
+ * is held back, together with leading white space of the body, until the body writes something else.
+ *
+ * @author Igor Polevoy
+ */
+public abstract class StreamingFreeMarkerTag extends FreeMarkerTag {
+
+    @Override
+    public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body) throws TemplateException, IOException {
+        FreeMarkerTL.setEnvironment(env);
+        Writer writer = env.getOut();
+        BodyWriter bodyWriter;
+        if (requiresBody()) {
+            StringWriter start = new StringWriter();
+            write(() -> writeStart(params, body != null, start));
+            bodyWriter = new BodyWriter(writer, start.toString());
+        } else {
+            write(() -> writeStart(params, body != null, writer));
+            bodyWriter = new BodyWriter(writer, null);
+        }
+        if (body != null) {
+            body.render(bodyWriter);
+        }
+        if (bodyWriter.pending != null) { // blank body, start was held back
+            StringWriter end = new StringWriter();
+            write(() -> writeEnd(params, true, end));
+            writer.write(bodyWriter.pending.toString());
+            writer.write(end.toString());
+        } else {
+            write(() -> writeEnd(params, bodyWriter.blank, writer));
+        }
+    }
+
+    /**
+     * Renders the tag with a body that was rendered already.
+     */
+    @Override
+    protected void render(Map params, String body, Writer writer) throws Exception {
+        Writer out = requiresBody() && blank(body) ? new StringWriter() : writer;
+        writeStart(params, !blank(body), out);
+        if (body != null) {
+            out.write(body);
+        }
+        writeEnd(params, blank(body), out);
+        if (out != writer) {
+            writer.write(out.toString());
+        }
+    }
+
+    /**
+     * Override to return true if the tag fails in {@link #writeEnd(Map, boolean, Writer)} when its body is blank,
+     * so that the start of the tag is not written before the failure.
+     *
+     * @return true if the tag must have a body that is not blank.
+     */
+    protected boolean requiresBody() {
+        return false;
+    }
+
+    /**
+     * Writes part of the tag preceding the body.
+     *
+     * @param params this is a list of parameters as provided to tag in HTML.
+     * @param hasBody true if the tag has a body, false if the tag has no body at all.
+     * @param writer writer to write output to.
+     * @throws Exception if any
+     */
+    protected abstract void writeStart(Map params, boolean hasBody, Writer writer) throws Exception;
+
+    /**
+     * Writes part of the tag following the body.
+     *
+     * @param params this is a list of parameters as provided to tag in HTML.
+     * @param blankBody true if the body was missing or rendered only whitespace.
+     * @param writer writer to write output to.
+     * @throws Exception if any
+     */
+    protected abstract void writeEnd(Map params, boolean blankBody, Writer writer) throws Exception;
+
+    private void write(TagWrite tagWrite) {
+        try {
+            tagWrite.write();
+        } catch (ViewException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ViewException(e);
+        }
+    }
+
+    private interface TagWrite {
+        void write() throws Exception;
+    }
+
+    /**
+     * Passes body through to the output, noting whether it has anything but whitespace. Text held back, if any,
+     * is written before the first character that is not white space.
+     */
+    private static class BodyWriter extends FilterWriter {
+        private boolean blank = true;
+        private StringBuilder pending;
+
+        BodyWriter(Writer out, String pending) {
+            super(out);
+            this.pending = pending == null ? null : new StringBuilder(pending);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            blank = blank && Character.isWhitespace(c);
+            if (hold()) {
+                pending.append((char) c);
+            } else {
+                out.write(c);
+            }
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            for (int i = off; blank && i < off + len; i++) {
+                blank = Character.isWhitespace(cbuf[i]);
+            }
+            if (hold()) {
+                pending.append(cbuf, off, len);
+            } else {
+                out.write(cbuf, off, len);
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            for (int i = off; blank && i < off + len; i++) {
+                blank = Character.isWhitespace(str.charAt(i));
+            }
+            if (hold()) {
+                pending.append(str, off, off + len);
+            } else {
+                out.write(str, off, len);
+            }
+        }
+
+        /**
+         * @return true if text is still held back, false if it was written or there is none.
+         */
+        private boolean hold() throws IOException {
+            if (pending != null && !blank) {
+                out.write(pending.toString());
+                pending = null;
+            }
+            return pending != null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush(); // output belongs to the template
+        }
+    }
+}
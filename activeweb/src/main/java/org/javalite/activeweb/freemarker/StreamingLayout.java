@@ -0,0 +1,112 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import org.javalite.common.Util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Output of a layout rendered ahead of its page, split at <code>${page_content}</code>.
+ * Content of <code>&lt;@yield&gt;</code> tags is not known while the layout renders, so yields leave placeholders
+ * that are resolved after the page was rendered and all <code>&lt;@content&gt;</code> sections were collected.
+ *
+ * @author Igor Polevoy
+ */
+class StreamingLayout {
+
+    static final String PAGE_CONTENT = "\u0000aw:page_content\u0000";
+    private static final String YIELD_START = "\u0000aw:yield:";
+    private static final char YIELD_END = '\u0000';
+
+    private final String head, tail;
+    private int headWritten;
+
+    StreamingLayout(String renderedLayout) {
+        int index = renderedLayout.indexOf(PAGE_CONTENT);
+        if (index == -1) {
+            head = renderedLayout;
+            tail = null;
+        } else {
+            head = renderedLayout.substring(0, index);
+            tail = renderedLayout.substring(index + PAGE_CONTENT.length());
+        }
+    }
+
+    /**
+     * @param name name of content as provided to the yield tag.
+     * @return placeholder written by a yield tag while the layout is rendered ahead of the page.
+     */
+    static String placeholder(String name) {
+        return YIELD_START + name + YIELD_END;
+    }
+
+    /**
+     * @return true if layout has a <code>${page_content}</code> placeholder.
+     */
+    boolean hasPageContent() {
+        return tail != null;
+    }
+
+    /**
+     * Writes the part of the layout head that does not depend on content of the page, that is everything
+     * up to the first yield.
+     *
+     * @param writer writer to write to
+     * @return true if the entire head was written, false if it has yields that need to wait for the page.
+     */
+    boolean writeHead(Writer writer) throws IOException {
+        int index = head.indexOf(YIELD_START, headWritten);
+        int end = index == -1 ? head.length() : index;
+        writer.write(head, headWritten, end - headWritten);
+        headWritten = end;
+        return headWritten == head.length();
+    }
+
+    /**
+     * Writes remainder of the head not written by {@link #writeHead(Writer)}, resolving yields.
+     */
+    void writeRestOfHead(Writer writer, Map<String, List<String>> content) throws IOException {
+        write(head.substring(headWritten), content, writer);
+        headWritten = head.length();
+    }
+
+    /**
+     * Writes part of the layout following <code>${page_content}</code>, resolving yields.
+     */
+    void writeTail(Writer writer, Map<String, List<String>> content) throws IOException {
+        if (tail != null) {
+            write(tail, content, writer);
+        }
+    }
+
+    private static void write(String text, Map<String, List<String>> content, Writer writer) throws IOException {
+        int start = 0, index;
+        while ((index = text.indexOf(YIELD_START, start)) != -1) {
+            writer.write(text, start, index - start);
+            int end = text.indexOf(YIELD_END, index + YIELD_START.length());
+            List<String> contentList = content.get(text.substring(index + YIELD_START.length(), end));
+            if (contentList != null) {
+                writer.write(Util.join(contentList, " "));
+            }
+            start = end + 1;
+        }
+        writer.write(text, start, text.length() - start);
+    }
+}
@@ -18,6 +18,7 @@ package org.javalite.activeweb.freemarker;
 
 import org.javalite.common.Util;
 
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
@@ -58,22 +59,7 @@ public class TagFactory {
     public void write(Writer w) {
 
         try {
-            w.write("<");
-            w.write(name);
-            for (Attribute a : attributes) {
-                w.write(" ");
-                w.write(a.name());
-                w.write("=");
-                w.write("\"");
-                w.write(a.value());
-                w.write("\"");
-            }
-
-
-            if(textAttributes != null){
-                w.write(" ");
-                w.write(textAttributes);
-            }
+            writeName(w);
 
             if(Util.blank(body)){
                 w.write("/>");
@@ -91,6 +77,55 @@ public class TagFactory {
         }
     }
 
+    /**
+     * Writes opening of the tag, such as <code>&lt;a href="..."&gt;</code>, ignoring the body. Used by tags that
+     * stream their body, see {@link StreamingFreeMarkerTag}.
+     *
+     * @param w writer to write to.
+     */
+    public void writeStart(Writer w) {
+        try {
+            writeName(w);
+            w.write(">");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes closing of the tag, such as <code>&lt;/a&gt;</code>.
+     *
+     * @param w writer to write to.
+     */
+    public void writeEnd(Writer w) {
+        try {
+            w.write("</");
+            w.write(name);
+            w.write(">");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void writeName(Writer w) throws IOException {
+        w.write("<");
+        w.write(name);
+        for (Attribute a : attributes) {
+            w.write(" ");
+            w.write(a.name());
+            w.write("=");
+            w.write("\"");
+            w.write(a.value());
+            w.write("\"");
+        }
+
+
+        if(textAttributes != null){
+            w.write(" ");
+            w.write(textAttributes);
+        }
+    }
+
     /**
      * Will add values from params map except the exceptions.
      *
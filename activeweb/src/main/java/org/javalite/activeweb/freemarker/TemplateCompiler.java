@@ -0,0 +1,445 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import org.javalite.activeweb.CompilationException;
+import org.javalite.common.Inflector;
+import org.javalite.common.Util;
+
+import javax.lang.model.SourceVersion;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates Java classes from templates at build time, to be rendered by {@link CompiledTemplateManager}.
+ * Only templates whose first line is <code>&lt;#-- @compile --&gt;</code> are compiled, the rest stay on FreeMarker.
+ * <p></p>
+ * Compiled templates support a restricted dialect:
+ * <ul>
+ *     <li>static text and comments</li>
+ *     <li>values, such as <code>${title}</code> or <code>${book.author.name}</code>, where names are keys of maps,
+ *     properties of objects or attributes of ActiveJDBC models. Associations of models are not supported. Numbers
+ *     and booleans are formatted with settings of the FreeMarker configuration, dates are not supported</li>
+ *     <li><code>${page_content}</code> in layouts</li>
+ *     <li><code>&lt;@render partial="name"/&gt;</code>, for partials that are also compiled</li>
+ *     <li><code>&lt;@content for="name"&gt;...&lt;/@content&gt;</code></li>
+ *     <li><code>&lt;@yield to="name"/&gt;</code></li>
+ * </ul>
+ *
+ * This is a subset of what FreeMarker renders: any other directive fails compilation. This includes FreeMarker
+ * directives such as <code>&lt;#list&gt;</code> or <code>&lt;#if&gt;</code>, built-ins, and all other tags of
+ * ActiveWeb, such as <code>&lt;@link_to&gt;</code>, <code>&lt;@form&gt;</code> or
+ * <code>&lt;@render partial="name" collection=items/&gt;</code>. ActiveWeb tags are implemented on top of a FreeMarker
+ * environment, so templates that use them stay on FreeMarker.
+ * Run the compiler in the <code>generate-sources</code> phase of a build,
+ * for instance with <code>exec-maven-plugin</code>:
+ *
+ * <pre>
+ *     java org.javalite.activeweb.freemarker.TemplateCompiler src/main/webapp/WEB-INF/views target/generated-sources/views app.views
+ * </pre>
+ *
+ * @author Igor Polevoy
+ */
+public class TemplateCompiler {
+
+    public static final String MARKER = "<#-- @compile -->";
+
+    private static final Pattern EXPRESSION = Pattern.compile("[A-Za-z_]\\w*(\\.[A-Za-z_]\\w*)*");
+    private static final Pattern TAGS_ONLY = Pattern.compile("\\s*((<#--.*?-->)|(</?[#@][^>$]*>))+\\s*");
+
+    private final String packageName;
+    private final Map<String, Set<String>> partials = new HashMap<>();
+
+    /**
+     * @param packageName base package of generated classes, see property <code>compiledTemplatesPackage</code>.
+     */
+    public TemplateCompiler(String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * Arguments: directory of templates, output directory for generated sources, base package (default "app.views").
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TemplateCompiler <templates directory> <output directory> [package]");
+            System.exit(1);
+        }
+        List<String> compiled = new TemplateCompiler(args.length > 2 ? args[2] : "app.views")
+                .compileAll(new File(args[0]), new File(args[1]));
+        System.out.println("Compiled " + compiled.size() + " templates: " + compiled);
+    }
+
+    /**
+     * Generates Java sources from all templates marked with {@link #MARKER}.
+     *
+     * @param templateDir directory of templates.
+     * @param outputDir directory to write Java sources to.
+     * @return names of compiled templates.
+     */
+    public List<String> compileAll(File templateDir, File outputDir) throws IOException {
+        Path root = templateDir.toPath();
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(p -> p.toString().endsWith(".ftl")).sorted().collect(Collectors.toList());
+        }
+        List<String> compiled = new ArrayList<>();
+        for (Path file : files) {
+            String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            if (!source.startsWith(MARKER)) {
+                continue;
+            }
+            String templateName = "/" + root.relativize(file).toString().replace(File.separatorChar, '/');
+            String className = className(packageName, templateName);
+            File javaFile = new File(outputDir, className.replace('.', File.separatorChar) + ".java");
+            javaFile.getParentFile().mkdirs();
+            Files.write(javaFile.toPath(), compile(templateName, source).getBytes(StandardCharsets.UTF_8));
+            compiled.add(templateName);
+        }
+        for (String templateName : compiled) {
+            for (String partial : partials.get(templateName)) {
+                if (!compiled.contains(partial)) {
+                    throw new CompilationException("Partial " + partial + " rendered from " + templateName
+                            + " must be compiled too, start it with " + MARKER);
+                }
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Generates Java source from a template.
+     *
+     * @param templateName name of template, such as "/books/index.ftl".
+     * @param source text of template.
+     * @return Java source of a subclass of {@link CompiledTemplate}.
+     */
+    public String compile(String templateName, String source) {
+        Compilation compilation = new Compilation(templateName, source);
+        compilation.parse("writer", false);
+        if (compilation.pos < source.length()) {
+            throw compilation.error("unexpected closing tag");
+        }
+        partials.put(templateName, compilation.partials);
+
+        String className = className(packageName, templateName);
+        int dot = className.lastIndexOf('.');
+        return "package " + className.substring(0, dot) + ";\n\n" +
+                "// Generated by " + TemplateCompiler.class.getName() + " from " + templateName + ", do not edit.\n" +
+                "public class " + className.substring(dot + 1) + " extends " + CompiledTemplate.class.getName() + " {\n\n" +
+                compilation.fields +
+                "\n    @Override\n" +
+                "    public String getTemplateName() {\n" +
+                "        return " + literal(templateName) + ";\n" +
+                "    }\n\n" +
+                "    @Override\n" +
+                "    public void render(java.util.Map<String, Object> values, java.io.Writer writer) throws Exception {\n" +
+                compilation.body +
+                "    }\n" +
+                "}\n";
+    }
+
+    /**
+     * Name of class generated from a template, such as <code>app.views.books.IndexTemplate</code> for
+     * "/books/index.ftl" or <code>app.views.books.BookPartialTemplate</code> for "/books/_book.ftl".
+     *
+     * @param packageName base package of generated classes.
+     * @param templateName name of template.
+     * @return fully qualified name of a class.
+     */
+    public static String className(String packageName, String templateName) {
+        String path = templateName.endsWith(".ftl") ? templateName.substring(0, templateName.length() - 4) : templateName;
+        String[] parts = Util.split(path, '/');
+        StringBuilder className = new StringBuilder(packageName);
+        for (int i = 0; i < parts.length - 1; i++) {
+            className.append('.').append(identifier(parts[i]));
+        }
+        String name = parts[parts.length - 1];
+        boolean partial = name.startsWith("_");
+        className.append('.').append(Inflector.camelize(identifier(partial ? name.substring(1) : name), true))
+                .append(partial ? "PartialTemplate" : "Template");
+        return className.toString();
+    }
+
+    private static String identifier(String name) {
+        String identifier = name.replaceAll("\\W", "_");
+        if (Character.isDigit(identifier.charAt(0))) {
+            identifier = "_" + identifier;
+        }
+        return SourceVersion.isKeyword(identifier) ? identifier + "_" : identifier;
+    }
+
+    private static String literal(String text) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"': literal.append("\\\""); break;
+                case '\\': literal.append("\\\\"); break;
+                case '\n': literal.append("\\n"); break;
+                case '\r': literal.append("\\r"); break;
+                case '\t': literal.append("\\t"); break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    /**
+     * State of compilation of one template.
+     */
+    private class Compilation {
+        private final String templateName, source;
+        private final StringBuilder fields = new StringBuilder(), body = new StringBuilder();
+        private final Set<String> partials = new LinkedHashSet<>();
+        private final boolean[] stripped;
+        private int pos, counter;
+
+        Compilation(String templateName, String source) {
+            this.templateName = templateName;
+            this.source = source;
+            this.stripped = new boolean[source.length()];
+            stripWhitespace();
+        }
+
+        /**
+         * Marks white space to be left out the same way as FreeMarker does: indentation and line break
+         * of lines that contain only tags and comments.
+         */
+        private void stripWhitespace() {
+            int lineStart = 0;
+            while (lineStart < source.length()) {
+                int lineEnd = source.indexOf('\n', lineStart);
+                lineEnd = lineEnd == -1 ? source.length() : lineEnd + 1;
+                if (TAGS_ONLY.matcher(source.substring(lineStart, lineEnd)).matches()) {
+                    int first = lineStart, last = lineEnd - 1;
+                    while (Character.isWhitespace(source.charAt(first))) {
+                        first++;
+                    }
+                    while (Character.isWhitespace(source.charAt(last))) {
+                        last--;
+                    }
+                    Arrays.fill(stripped, lineStart, first, true);
+                    Arrays.fill(stripped, last + 1, lineEnd, true);
+                }
+                lineStart = lineEnd;
+            }
+        }
+
+        /**
+         * Generates code until end of source, or until closing tag of <code>&lt;@content&gt;</code>.
+         */
+        void parse(String writer, boolean inContent) {
+            while (pos < source.length()) {
+                if (source.startsWith("<#--", pos)) {
+                    pos = indexOf("-->", "comment is not closed") + 3;
+                } else if (source.startsWith("${", pos)) {
+                    expression(writer);
+                } else if (source.startsWith("</@", pos)) {
+                    if (!inContent) {
+                        return;
+                    }
+                    String name = source.substring(pos + 3, indexOf(">", "tag is not closed")).trim();
+                    if (!name.isEmpty() && !name.equals("content")) {
+                        throw error("unexpected closing tag </@" + name + ">");
+                    }
+                    pos = source.indexOf('>', pos) + 1;
+                    return;
+                } else if (source.startsWith("<@", pos)) {
+                    directive(writer);
+                } else if (source.startsWith("<#", pos) || source.startsWith("</#", pos)) {
+                    throw error("FreeMarker directives are not supported in compiled templates");
+                } else {
+                    text(writer);
+                }
+            }
+            if (inContent) {
+                throw error("<@content> is not closed");
+            }
+        }
+
+        private void text(String writer) {
+            int end = pos + 1;
+            while (end < source.length() && !(source.startsWith("<#", end) || source.startsWith("</#", end)
+                    || source.startsWith("<@", end) || source.startsWith("</@", end) || source.startsWith("${", end))) {
+                end++;
+            }
+            StringBuilder text = new StringBuilder();
+            for (int i = pos; i < end; i++) {
+                if (!stripped[i]) {
+                    text.append(source.charAt(i));
+                }
+            }
+            pos = end;
+            if (text.length() == 0) {
+                return;
+            }
+            String field = "TEXT_" + counter++;
+            fields.append("    private static final char[] ").append(field).append(" = ")
+                    .append(literal(text.toString())).append(".toCharArray();\n");
+            line(writer + ".write(" + field + ");");
+        }
+
+        private void expression(String writer) {
+            int end = indexOf("}", "expression is not closed");
+            String expression = source.substring(pos + 2, end).trim();
+            if (!EXPRESSION.matcher(expression).matches()) {
+                throw error("only names such as ${book.title} are supported in compiled templates, found: ${" + expression + "}");
+            }
+            String field = "PATH_" + counter++;
+            StringBuilder path = new StringBuilder();
+            for (String name : Util.split(expression, '.')) {
+                path.append(path.length() == 0 ? "" : ", ").append(literal(name));
+            }
+            fields.append("    private static final String[] ").append(field).append(" = {").append(path).append("};\n");
+            line("write(" + writer + ", values, " + field + ");");
+            pos = end + 1;
+        }
+
+        private void directive(String writer) {
+            int start = pos;
+            pos += 2;
+            int nameEnd = pos;
+            while (nameEnd < source.length() && Character.isJavaIdentifierPart(source.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            String name = source.substring(pos, nameEnd);
+            pos = nameEnd;
+            Map<String, String> attributes = new HashMap<>();
+            boolean selfClosing = attributes(attributes);
+            switch (name) {
+                case "render":
+                    requireAttributes(start, name, attributes, selfClosing, "partial");
+                    String partial = partialName(attributes.get("partial"));
+                    partials.add(partial);
+                    String field = "PARTIAL_" + counter++;
+                    String className = className(packageName, partial);
+                    fields.append("    private static final ").append(CompiledTemplate.class.getName()).append(' ')
+                            .append(field).append(" = new ").append(className).append("();\n");
+                    line(field + ".render(values, " + writer + ");");
+                    break;
+                case "yield":
+                    requireAttributes(start, name, attributes, selfClosing, "to");
+                    line("yieldContent(" + writer + ", " + literal(attributes.get("to")) + ");");
+                    break;
+                case "content":
+                    if (selfClosing) {
+                        pos = start;
+                        throw error("<@content> must have a body");
+                    }
+                    requireAttributes(start, name, attributes, false, "for");
+                    String contentWriter = "content" + counter++;
+                    line("java.io.Writer " + contentWriter + " = contentWriter();");
+                    parse(contentWriter, true);
+                    line("content(" + literal(attributes.get("for")) + ", " + contentWriter + ");");
+                    break;
+                default:
+                    pos = start;
+                    throw error("<@" + name + "> is not supported in compiled templates, remove " + MARKER
+                            + " to render this template with FreeMarker");
+            }
+        }
+
+        /**
+         * Reads attributes in double quotes.
+         *
+         * @return true if tag is self-closing.
+         */
+        private boolean attributes(Map<String, String> attributes) {
+            while (true) {
+                while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                    pos++;
+                }
+                if (source.startsWith("/>", pos)) {
+                    pos += 2;
+                    return true;
+                }
+                if (source.startsWith(">", pos)) {
+                    pos++;
+                    return false;
+                }
+                int eq = source.indexOf('=', pos);
+                if (eq == -1 || eq + 1 >= source.length() || source.charAt(eq + 1) != '"') {
+                    throw error("only attributes in double quotes are supported in compiled templates");
+                }
+                int end = source.indexOf('"', eq + 2);
+                if (end == -1) {
+                    throw error("attribute is not closed");
+                }
+                attributes.put(source.substring(pos, eq).trim(), source.substring(eq + 2, end));
+                pos = end + 1;
+            }
+        }
+
+        private void requireAttributes(int start, String name, Map<String, String> attributes, boolean selfClosing,
+                                       String attribute) {
+            if (!attributes.keySet().equals(Collections.singleton(attribute))) {
+                pos = start;
+                throw error("<@" + name + "> supports only attribute '" + attribute + "' in compiled templates");
+            }
+            if (!selfClosing && !name.equals("content")) {
+                pos = start;
+                throw error("<@" + name + "> must not have a body");
+            }
+        }
+
+        /**
+         * Resolves name of a partial the same way as {@link RenderTag}.
+         */
+        private String partialName(String partial) {
+            if (!partial.startsWith("/")) {
+                return templateName.substring(0, templateName.lastIndexOf('/')) + "/_" + partial + ".ftl";
+            }
+            if (Util.split(partial, '/').length < 2) {
+                throw error("wrong name of shared partial");
+            }
+            return partial.substring(0, partial.lastIndexOf('/')) + "/_" + partial.substring(partial.lastIndexOf('/') + 1) + ".ftl";
+        }
+
+        private void line(String code) {
+            body.append("        ").append(code).append('\n');
+        }
+
+        private int indexOf(String text, String message) {
+            int index = source.indexOf(text, pos);
+            if (index == -1) {
+                throw error(message);
+            }
+            return index;
+        }
+
+        private CompilationException error(String message) {
+            int line = 1;
+            for (int i = 0; i < pos && i < source.length(); i++) {
+                if (source.charAt(i) == '\n') {
+                    line++;
+                }
+            }
+            return new CompilationException("Failed to compile " + templateName + ", line " + line + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import freemarker.template.Template;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache and rendering counters of a single template, see {@link FreeMarkerTemplateManager#getTemplateStatistics()}.
+ *
+ * <ul>
+ *     <li>Hit - template was found in cache.</li>
+ *     <li>Miss - template was not in cache, or was stale, and had to be loaded and parsed.</li>
+ *     <li>Render - template was rendered as a page, layout or partial. Render time of a template includes
+ *     time of partials and includes rendered from it.</li>
+ * </ul>
+ *
+ * @author Igor Polevoy
+ */
+public class TemplateStatistics {
+
+    private final String name;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    private volatile WeakReference<Template> lastTemplate = new WeakReference<>(null);
+
+    TemplateStatistics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a lookup of a template. A lookup that returns an instance different from the previous one
+     * means the template was parsed. The previous instance is referenced weakly, so that statistics do not keep
+     * a template evicted from cache in memory.
+     */
+    void lookedUp(Template template, long nanos) {
+        if (template == lastTemplate.get()) {
+            hits.increment();
+        } else {
+            lastTemplate = new WeakReference<>(template);
+            misses.increment();
+            parseNanos.add(nanos);
+        }
+    }
+
+    void rendered(long nanos) {
+        renders.increment();
+        renderNanos.add(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return total time spent loading and parsing this template, in milliseconds.
+     */
+    public long getParseMillis() {
+        return parseNanos.sum() / 1000000;
+    }
+
+    public long getRenders() {
+        return renders.sum();
+    }
+
+    /**
+     * @return total time spent rendering this template, in milliseconds.
+     */
+    public long getRenderMillis() {
+        return renderNanos.sum() / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return "{\"name\":\"" + name + "\",\"hits\":" + getHits() + ",\"misses\":" + getMisses()
+                + ",\"parse_millis\":" + getParseMillis() + ",\"renders\":" + getRenders()
+                + ",\"render_millis\":" + getRenderMillis() + "}";
+    }
+}
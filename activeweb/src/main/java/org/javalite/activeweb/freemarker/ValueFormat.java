@@ -0,0 +1,98 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import freemarker.template.Configuration;
+import org.javalite.activeweb.ViewException;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Converts values of <code>${...}</code> in compiled templates to text the same way as FreeMarker does with
+ * settings <code>number_format</code>, <code>boolean_format</code> and <code>locale</code> of a configuration.
+ * Dates are not converted, because FreeMarker needs to know if a date is a date, a time or both.
+ *
+ * @author Igor Polevoy
+ */
+class ValueFormat {
+
+    private final String numberFormat, booleanFormat;
+    private final Locale locale;
+    private final ThreadLocal<NumberFormat> numberFormats;
+
+    ValueFormat(Configuration config) {
+        this.numberFormat = config.getNumberFormat();
+        this.booleanFormat = config.getBooleanFormat();
+        this.locale = config.getLocale();
+        NumberFormat prototype = numberFormat(numberFormat, locale);
+        numberFormats = ThreadLocal.withInitial(() -> (NumberFormat) prototype.clone());
+    }
+
+    /**
+     * @return true if this format was created from current settings of a configuration.
+     */
+    boolean matches(Configuration config) {
+        return numberFormat.equals(config.getNumberFormat()) && booleanFormat.equals(config.getBooleanFormat())
+                && locale.equals(config.getLocale());
+    }
+
+    /**
+     * @param value value of an expression, not null.
+     * @param expression expression, used in messages.
+     * @return value as text.
+     */
+    String format(Object value, String expression) {
+        if (value instanceof String) {
+            return (String) value;
+        } else if (value instanceof Number) {
+            return numberFormats.get().format(value);
+        } else if (value instanceof Boolean) {
+            int comma = booleanFormat.indexOf(',');
+            if (booleanFormat.equals("true,false") || comma == -1) {
+                throw new ViewException("Can't convert boolean ${" + expression + "} to string, "
+                        + "set boolean_format of FreeMarker configuration");
+            }
+            return (Boolean) value ? booleanFormat.substring(0, comma) : booleanFormat.substring(comma + 1);
+        } else if (value instanceof Date) {
+            throw new ViewException("Dates are not formatted by compiled templates, format ${" + expression
+                    + "} in a controller or render the template with FreeMarker");
+        }
+        return value.toString();
+    }
+
+    private static NumberFormat numberFormat(String format, Locale locale) {
+        switch (format) {
+            case "number":
+                return NumberFormat.getNumberInstance(locale);
+            case "currency":
+                return NumberFormat.getCurrencyInstance(locale);
+            case "percent":
+                return NumberFormat.getPercentInstance(locale);
+            case "computer":
+                return new DecimalFormat("0.################", DecimalFormatSymbols.getInstance(Locale.US));
+            default:
+                try {
+                    return new DecimalFormat(format, DecimalFormatSymbols.getInstance(locale));
+                } catch (IllegalArgumentException e) {
+                    throw new ViewException("number_format '" + format + "' is not supported in compiled templates", e);
+                }
+        }
+    }
+}
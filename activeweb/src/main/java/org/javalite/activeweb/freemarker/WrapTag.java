@@ -16,8 +16,9 @@ limitations under the License.
 package org.javalite.activeweb.freemarker;
 
 import freemarker.core.Environment;
-import freemarker.template.SimpleHash;
+import freemarker.template.SimpleScalar;
 import freemarker.template.Template;
+import freemarker.template.TemplateBooleanModel;
 import freemarker.template.TemplateDirectiveBody;
 import freemarker.template.TemplateDirectiveModel;
 import freemarker.template.TemplateException;
@@ -25,8 +26,8 @@ import freemarker.template.TemplateModel;
 import freemarker.template.TemplateModelException;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Map;
-import java.util.Set;
 import org.javalite.common.Util;
 
 /**
@@ -41,6 +42,17 @@ import org.javalite.common.Util;
  * Output will look like this:
  * [WRAPPER_HEADER]Inner Content[WRAPPER_FOOTER]  
  *
+ * <p/><p/>
+ * Inner content is rendered before the wrapper, so that variables assigned and content collected by inner content
+ * are seen by the wrapper. With attribute <code>stream=true</code>, the wrapper is rendered first, and inner
+ * content is written straight to output where the wrapper writes <code>${page_content}</code>, rather than being
+ * kept in memory:
+ * <pre>
+ *     &lt;@wrap with="/wrap/wrapper" stream=true&gt;Inner Content&lt;/@wrap&gt;
+ * </pre>
+ * Use it only if the wrapper does nothing with <code>page_content</code> but write it, and does not depend on
+ * anything set by inner content.
+ *
  * @author Max Artyukhov
  */
 public class WrapTag implements TemplateDirectiveModel {
@@ -52,23 +64,49 @@ public class WrapTag implements TemplateDirectiveModel {
 
         String withArgument = params.get("with").toString();
 
-        StringWriter innerContent = new StringWriter();
-        body.render(innerContent);        
-
-        SimpleHash envValues = getHash(env);
+        LayeredHashModel envValues = new LayeredHashModel(env);
         envValues.putAll(params);
-        envValues.put("page_content", innerContent.toString());
-        for(Object key : params.keySet()) {
-            if(key.toString().equals("with")) {
-                continue;
-            } else {
-                envValues.put(key.toString(), params.get(key));
-            }
-        }
 
         String path = getTemplatePath(env.getTemplate().getName(), withArgument);
         Template template = env.getConfiguration().getTemplate(path + ".ftl");
-        template.process(envValues, env.getOut());
+        Writer out = env.getOut();
+        if (!stream(params.get("stream"))) {
+            StringWriter innerContent = new StringWriter();
+            if (body != null) {
+                body.render(innerContent);
+            }
+            envValues.put("page_content", new SimpleScalar(innerContent.toString()));
+            MeteredConfiguration.process(env, template, envValues, out);
+            return;
+        }
+
+        envValues.put("page_content", new SimpleScalar(StreamingLayout.PAGE_CONTENT));
+        StringWriter wrapper = new StringWriter();
+        MeteredConfiguration.process(env, template, envValues, wrapper);
+
+        String wrapped = wrapper.toString();
+        int index = wrapped.indexOf(StreamingLayout.PAGE_CONTENT);
+        if (index != -1 && index == wrapped.lastIndexOf(StreamingLayout.PAGE_CONTENT)) {
+            out.write(wrapped, 0, index);
+            if (body != null) {
+                body.render(out);
+            }
+            index += StreamingLayout.PAGE_CONTENT.length();
+            out.write(wrapped, index, wrapped.length() - index);
+        } else {
+            StringWriter innerContent = new StringWriter();
+            if (body != null) {
+                body.render(innerContent);
+            }
+            out.write(wrapped.replace(StreamingLayout.PAGE_CONTENT, innerContent.toString()));
+        }
+    }
+
+    private static boolean stream(Object stream) throws TemplateModelException {
+        if (stream instanceof TemplateBooleanModel) {
+            return ((TemplateBooleanModel) stream).getAsBoolean();
+        }
+        return stream != null && stream.toString().equals("true");
     }
 
     private String getTemplatePath(String containerName, String templateArgumentName){
@@ -90,13 +128,4 @@ public class WrapTag implements TemplateDirectiveModel {
         return templatePath;
     }
 
-    private SimpleHash getHash(Environment env) throws TemplateModelException {
-        Set names = env.getKnownVariableNames();
-        SimpleHash simpleHash = new SimpleHash();
-        for(Object name: names){
-            simpleHash.put(name.toString(),env.getVariable(name.toString()));
-        }
-        return simpleHash;
-    }
-
 }
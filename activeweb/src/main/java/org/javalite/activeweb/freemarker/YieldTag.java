@@ -33,6 +33,10 @@ public class YieldTag extends FreeMarkerTag {
         validateParamsPresence(params, "to");
         String nameOfContent = params.get("to").toString();
 
+        if(ContentTL.yieldsDeferred()){
+            writer.write(StreamingLayout.placeholder(nameOfContent));
+            return;
+        }
 
         Map<String, List<String>> allContent = ContentTL.getAllContent();
         if(allContent == null){
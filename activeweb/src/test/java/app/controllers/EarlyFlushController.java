@@ -0,0 +1,41 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License"); 
+you may not use this file except in compliance with the License. 
+You may obtain a copy of the License at 
+
+http://www.apache.org/licenses/LICENSE-2.0 
+
+Unless required by applicable law or agreed to in writing, software 
+distributed under the License is distributed on an "AS IS" BASIS, 
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+See the License for the specific language governing permissions and 
+limitations under the License. 
+*/
+package app.controllers;
+
+import org.javalite.activeweb.AppController;
+
+/**
+ * @author Igor Polevoy
+ */
+public class EarlyFlushController extends AppController {
+
+    @Override
+    protected boolean flushLayoutHead() {
+        return true;
+    }
+
+    public void index(){
+        view("name", "John");
+    }
+
+    public void fail(){
+        throw new RuntimeException("failed after flush");
+    }
+
+    public void goAway(){
+        redirect(HelloController.class);
+    }
+}
@@ -17,6 +17,7 @@ limitations under the License.
 package app.controllers;
 
 import org.javalite.activeweb.AppController;
+import org.javalite.activeweb.FormItem;
 import org.javalite.activeweb.annotations.DELETE;
 import org.javalite.activeweb.annotations.GET;
 import org.javalite.activeweb.annotations.POST;
@@ -32,6 +33,11 @@ public class OkController extends AppController {
         respond("OK");
     }
 
+    @GET
+    public void form() {
+        render().noLayout();
+    }
+
     @DELETE
     public void destroy() {
         respond("OK");
@@ -42,6 +48,15 @@ public class OkController extends AppController {
         respond("OK");
     }
 
+    @POST
+    public void upload() {
+        StringBuilder names = new StringBuilder();
+        for (FormItem item : multipartFormItems()) {
+            names.append(item.getFieldName()).append(' ');
+        }
+        respond(names.toString().trim());
+    }
+
     @PUT
     public void update() {
         respond("OK");
@@ -0,0 +1,58 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License"); 
+you may not use this file except in compliance with the License. 
+You may obtain a copy of the License at 
+
+http://www.apache.org/licenses/LICENSE-2.0 
+
+Unless required by applicable law or agreed to in writing, software 
+distributed under the License is distributed on an "AS IS" BASIS, 
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+See the License for the specific language governing permissions and 
+limitations under the License. 
+*/
+package app.controllers;
+
+import org.javalite.activejdbc.Base;
+import org.javalite.activeweb.AppController;
+import org.javalite.activeweb.annotations.POST;
+import org.javalite.activeweb.annotations.ReadOnly;
+
+/**
+ * @author Igor Polevoy
+ */
+public class ReplicaController extends AppController {
+
+    public void index() {
+        Base.findAll("select * from books");
+        respond("OK");
+    }
+
+    @POST
+    public void create() {
+        Base.exec("insert into books (title) values (?)", "Walden");
+        respond("OK");
+    }
+
+    @POST @ReadOnly
+    public void report() {
+        Base.findAll("select count(*) from books");
+        respond("OK");
+    }
+
+    public void save() {
+        Base.exec("update books set title = 'Walden'");
+        Base.findAll("select * from books");
+        respond("OK");
+    }
+
+    public void transfer() {
+        Base.openTransaction();
+        Base.findAll("select * from accounts");
+        Base.exec("update accounts set balance = 0");
+        Base.commitTransaction();
+        respond("OK");
+    }
+}
@@ -0,0 +1,25 @@
+package app.views.compiled;
+
+// Generated by org.javalite.activeweb.freemarker.TemplateCompiler from /compiled/_book.ftl, do not edit.
+public class BookPartialTemplate extends org.javalite.activeweb.freemarker.CompiledTemplate {
+
+    private static final char[] TEXT_0 = "<p class=\"book\">".toCharArray();
+    private static final String[] PATH_1 = {"book", "title"};
+    private static final char[] TEXT_2 = " - ".toCharArray();
+    private static final String[] PATH_3 = {"book", "price"};
+    private static final char[] TEXT_4 = "</p>\n".toCharArray();
+
+    @Override
+    public String getTemplateName() {
+        return "/compiled/_book.ftl";
+    }
+
+    @Override
+    public void render(java.util.Map<String, Object> values, java.io.Writer writer) throws Exception {
+        writer.write(TEXT_0);
+        write(writer, values, PATH_1);
+        writer.write(TEXT_2);
+        write(writer, values, PATH_3);
+        writer.write(TEXT_4);
+    }
+}
@@ -0,0 +1,29 @@
+package app.views.compiled;
+
+// Generated by org.javalite.activeweb.freemarker.TemplateCompiler from /compiled/index.ftl, do not edit.
+public class IndexTemplate extends org.javalite.activeweb.freemarker.CompiledTemplate {
+
+    private static final char[] TEXT_1 = "Books of ".toCharArray();
+    private static final String[] PATH_2 = {"author", "name"};
+    private static final char[] TEXT_3 = "\n<h1>".toCharArray();
+    private static final String[] PATH_4 = {"greeting"};
+    private static final char[] TEXT_5 = ", \"reader\"!</h1>\n".toCharArray();
+    private static final org.javalite.activeweb.freemarker.CompiledTemplate PARTIAL_6 = new app.views.compiled.BookPartialTemplate();
+
+    @Override
+    public String getTemplateName() {
+        return "/compiled/index.ftl";
+    }
+
+    @Override
+    public void render(java.util.Map<String, Object> values, java.io.Writer writer) throws Exception {
+        java.io.Writer content0 = contentWriter();
+        content0.write(TEXT_1);
+        write(content0, values, PATH_2);
+        content("title", content0);
+        writer.write(TEXT_3);
+        write(writer, values, PATH_4);
+        writer.write(TEXT_5);
+        PARTIAL_6.render(values, writer);
+    }
+}
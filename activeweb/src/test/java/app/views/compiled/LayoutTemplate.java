@@ -0,0 +1,24 @@
+package app.views.compiled;
+
+// Generated by org.javalite.activeweb.freemarker.TemplateCompiler from /compiled/layout.ftl, do not edit.
+public class LayoutTemplate extends org.javalite.activeweb.freemarker.CompiledTemplate {
+
+    private static final char[] TEXT_0 = "<html><head><title>".toCharArray();
+    private static final char[] TEXT_1 = "</title></head>\n<body>".toCharArray();
+    private static final String[] PATH_2 = {"page_content"};
+    private static final char[] TEXT_3 = "</body></html>\n".toCharArray();
+
+    @Override
+    public String getTemplateName() {
+        return "/compiled/layout.ftl";
+    }
+
+    @Override
+    public void render(java.util.Map<String, Object> values, java.io.Writer writer) throws Exception {
+        writer.write(TEXT_0);
+        yieldContent(writer, "title");
+        writer.write(TEXT_1);
+        write(writer, values, PATH_2);
+        writer.write(TEXT_3);
+    }
+}
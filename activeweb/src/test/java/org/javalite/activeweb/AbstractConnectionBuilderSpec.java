@@ -20,6 +20,29 @@ public class AbstractConnectionBuilderSpec  {
     @Before
     public void before(){
         DbConfiguration.resetConnectionWrappers();
+        AbstractDBConfig.clearReplicaConnectionWrappers();
+    }
+
+    @Test
+    public void shouldConfigureReplicasSeparatelyFromPrimary(){
+        class DBConfig extends AbstractDBConfig{
+            public void init(AppContext appContext) {
+                environment("development").jndi("jdbc/primary");
+                replica("development").jndi("jdbc/replica1");
+                replica("development").db("second").jndi("jdbc/replica2");
+                replica("production").jndi("jdbc/replica3");
+            }
+        }
+
+        DBConfig config = new DBConfig();
+        config.init(null);
+
+        a(DbConfiguration.getConnectionSpecWrappers("development").size()).shouldBeEqual(1);
+
+        List<ConnectionSpecWrapper> replicas = AbstractDBConfig.getReplicaConnectionSpecWrappers("default");
+        the(replicas.size()).shouldBeEqual(1);
+        a(((ConnectionJndiSpec) replicas.get(0).getConnectionSpec()).getDataSourceJndiName()).shouldBeEqual("jdbc/replica1");
+        a(AbstractDBConfig.getReplicaConnectionSpecWrappers("second").size()).shouldBeEqual(1);
     }
 
     @Test
@@ -3,15 +3,19 @@ package org.javalite.activeweb;
 import org.javalite.activeweb.controller_filters.CSRFFilter;
 import org.javalite.activeweb.controller_filters.HttpSupportFilter;
 import org.javalite.activeweb.freemarker.FreeMarkerTemplateManager;
+import org.javalite.common.Util;
 import org.junit.*;
 import org.junit.runners.MethodSorters;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 
@@ -73,6 +77,19 @@ public class CSRFSpec extends RequestSpec {
     }
 
 
+    @Test
+    public void testAC_shouldEncodeTokensAsBase64() {
+        Random random = new Random(1);
+        for (int length = 0; length < 40; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            a(CSRF.SecureRandomTokenProvider.toBase64(bytes)).shouldBeEqual(Util.toBase64(bytes));
+        }
+        a(new CSRF.SecureRandomTokenProvider().nextToken().length()).shouldEqual(44);
+        a(new CSRF.SecureRandomTokenProvider().nextName().length()).shouldEqual(8);
+    }
+
+
     /* FormTag */
 
 
@@ -165,7 +182,21 @@ public class CSRFSpec extends RequestSpec {
     }
 
     @Test
-    public void testDB_shouldDenyPOSTRequestWithoutToken() throws IOException, ServletException {
+    public void testDAA_shouldRenderFormWithTokenWithoutSession() throws IOException, ServletException {
+        setupControllerConfig();
+        request = new MockHttpServletRequest();
+        request.setContextPath("/test_context");
+        request.setServletPath("/ok/form");
+        request.setMethod("GET");
+        dispatcher.doFilter(request, response, filterChain);
+        a(response.getStatus()).shouldEqual(200);
+        a(request.getSession(false)).shouldNotBeNull();
+        String token = (String) request.getSession(false).getAttribute(CSRF.CSRF_TOKEN_VALUE);
+        a(response.getContentAsString()).shouldContain("value='" + token + "'");
+    }
+
+    @Test
+    public void testDB_shouldDenyPOSTRequestWithoutToken()throws IOException, ServletException {
         setupControllerConfig();
         request.setServletPath("/ok/create");
         request.setMethod("POST");
@@ -323,6 +354,43 @@ public class CSRFSpec extends RequestSpec {
         a(response.getStatus()).shouldEqual(403);
     }
 
+    private byte[] multipartBody(boolean tokenFirst) {
+        String token = "------WebKitFormBoundaryEdl9aEHfg8EOlnx0\r\n" +
+                "Content-Disposition: form-data; name=\"" + CSRF.name() + "\"\r\n" +
+                "\r\n" +
+                CSRF.token() + "\r\n";
+        String file = "------WebKitFormBoundaryEdl9aEHfg8EOlnx0\r\n" +
+                "Content-Disposition: form-data; name=\"contacts_data\"; filename=\"contacts.csv\"\r\n" +
+                "Content-Type: text/csv\r\n" +
+                "\r\n" +
+                "\"test_0@test.com\",\"Test_0\",\"Testovich_0\"\r\n";
+        return ((tokenFirst ? token + file : file + token) + "------WebKitFormBoundaryEdl9aEHfg8EOlnx0--\r\n").getBytes();
+    }
+
+    @Test
+    public void testDO_shouldKeepMultipartItemsAfterVerification() throws IOException, ServletException {
+        setupControllerConfig();
+        String name = CSRF.name();
+        request.setServletPath("/ok/upload");
+        request.setContentType("multipart/form-data; boundary=----WebKitFormBoundaryEdl9aEHfg8EOlnx0");
+        request.setContent(multipartBody(true));
+        request.setMethod("POST");
+        dispatcher.doFilter(request, response, filterChain);
+        a(response.getStatus()).shouldEqual(200);
+        a(response.getContentAsString()).shouldBeEqual(name + " contacts_data");
+    }
+
+    @Test
+    public void testDP_shouldDenyMultipartRequestWithTokenAfterFile() throws IOException, ServletException {
+        setupControllerConfig();
+        request.setServletPath("/ok/upload");
+        request.setContentType("multipart/form-data; boundary=----WebKitFormBoundaryEdl9aEHfg8EOlnx0");
+        request.setContent(multipartBody(false));
+        request.setMethod("POST");
+        dispatcher.doFilter(request, response, filterChain);
+        a(response.getStatus()).shouldEqual(403);
+    }
+
     /* LinkToTag */
 
     @Test
@@ -343,4 +411,53 @@ public class CSRFSpec extends RequestSpec {
         a(sw.toString()).shouldBeEqual("<a href=\"/bookstore/book/read/2?first_name=John\" data-link=\"aw\" class=\"red_button\">Click here to read book 2</a>");
     }
 
+
+    /* SignedTokenProvider */
+
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes();
+
+    private int postWithSignedToken(long ttlSeconds, boolean sendCookie, String tokenSuffix) throws IOException, ServletException {
+        CSRF.setTokenProvider(new CSRF.SignedTokenProvider(SECRET, ttlSeconds));
+        try {
+            String token = CSRF.token();
+            a(CSRF.name()).shouldBeEqual(CSRF.SignedTokenProvider.PARAM_NAME);
+            Cookie key = response.getCookie(CSRF.SignedTokenProvider.COOKIE_NAME);
+            a(key.isHttpOnly()).shouldBeTrue();
+
+            setupControllerConfig();
+            request.removeAttribute(CSRF.SignedTokenProvider.COOKIE_NAME);
+            request.getSession().invalidate();
+            if (sendCookie) {
+                request.setCookies(key);
+            }
+            request.setServletPath("/ok/create");
+            request.setMethod("POST");
+            request.addParameter(CSRF.SignedTokenProvider.PARAM_NAME, token + tokenSuffix);
+            response = new MockHttpServletResponse();
+            dispatcher.doFilter(request, response, filterChain);
+            return response.getStatus();
+        } finally {
+            CSRF.setTokenProvider(new CSRF.SecureRandomTokenProvider());
+        }
+    }
+
+    @Test
+    public void testFA_shouldPassPOSTRequestWithSignedToken() throws IOException, ServletException {
+        a(postWithSignedToken(60, true, "")).shouldEqual(200);
+    }
+
+    @Test
+    public void testFB_shouldDenySignedTokenWithoutCookie() throws IOException, ServletException {
+        a(postWithSignedToken(60, false, "")).shouldEqual(403);
+    }
+
+    @Test
+    public void testFC_shouldDenyModifiedSignedToken() throws IOException, ServletException {
+        a(postWithSignedToken(60, true, "A")).shouldEqual(403);
+    }
+
+    @Test
+    public void testFD_shouldDenyExpiredSignedToken() throws IOException, ServletException {
+        a(postWithSignedToken(-1, true, "")).shouldEqual(403);
+    }
 }
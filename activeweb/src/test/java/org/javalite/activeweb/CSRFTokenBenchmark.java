@@ -0,0 +1,58 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures throughput of CSRF token generation with many threads. Not a test, run it manually:
+ *
+ * <pre>
+ *     java -cp target/classes:target/test-classes:... org.javalite.activeweb.CSRFTokenBenchmark [threads] [seconds]
+ * </pre>
+ *
+ * @author Igor Polevoy
+ */
+public class CSRFTokenBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        CSRF.TokenProvider provider = new CSRF.SecureRandomTokenProvider();
+
+        run(provider, threads, 1); // warm up
+        long tokens = run(provider, threads, seconds);
+        System.out.println(threads + " threads: " + tokens / seconds + " tokens per second");
+    }
+
+    private static long run(CSRF.TokenProvider provider, int threads, int seconds) throws InterruptedException {
+        LongAdder tokens = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long end = System.nanoTime() + seconds * 1000000000L;
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    provider.nextToken();
+                    tokens.increment();
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        return tokens.sum();
+    }
+}
@@ -20,6 +20,7 @@ import org.javalite.test.XPathHelper;
 import org.junit.Test;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
 import java.io.IOException;
 
 /**
@@ -96,4 +97,65 @@ public class ControllerRunnerSpec extends RequestSpec{
         a(response.getStatus()).shouldBeEqual(405);
         a(response.getHeader("Allow")).shouldBeEqual("GET, POST");
     }
+
+    @Test
+    public void shouldFlushLayoutHeadBeforeAction() throws IOException, ServletException {
+        request.setServletPath("/early_flush");
+        request.setMethod("GET");
+        dispatcher.doFilter(request, response, filterChain);
+        String html = response.getContentAsString();
+
+        a(XPathHelper.selectText("//div[@id='header']", html)).shouldBeEqual("this is a header");
+        the(XPathHelper.selectText("//div[@id='content']", html)).shouldContain("name is: John");
+        a(XPathHelper.selectText("//div[@id='footer']", html)).shouldBeEqual("this is a footer");
+    }
+
+    @Test
+    public void shouldRenderErrorInsideFlushedLayout() throws IOException, ServletException {
+        request.setServletPath("/early_flush/fail");
+        request.setMethod("GET");
+        dispatcher.doFilter(request, response, filterChain);
+        String html = response.getContentAsString();
+
+        a(XPathHelper.count("//div[@id='header']", html)).shouldBeEqual(1);
+        a(XPathHelper.selectText("//div[@id='footer']", html)).shouldBeEqual("this is a footer");
+        the(html).shouldContain("failed after flush");
+    }
+
+    @Test
+    public void shouldCompleteFlushedLayoutInsteadOfRedirect() throws IOException, ServletException {
+        request.setServletPath("/early_flush/go_away");
+        request.setMethod("GET");
+        dispatcher.doFilter(request, response, filterChain);
+        String html = response.getContentAsString();
+
+        a(XPathHelper.selectText("//div[@id='header']", html)).shouldBeEqual("this is a header");
+        a(XPathHelper.selectText("//div[@id='footer']", html)).shouldBeEqual("this is a footer");
+        a(response.getRedirectedUrl()).shouldBeNull();
+    }
+
+    @Test
+    public void shouldSendCookieFlashBeforeLayoutHeadIsFlushed() throws IOException, ServletException {
+        a(cookieFlashAfter("/early_flush").getMaxAge()).shouldBeEqual(0);
+        a(response.isCommitted()).shouldBeTrue();
+    }
+
+    @Test
+    public void shouldSendCookieFlashWhenFilterRendersException() throws IOException, ServletException {
+        a(cookieFlashAfter("/db_exception").getMaxAge()).shouldBeEqual(0);
+        the(response.getContentAsString()).shouldContain("this is an issue 88");
+    }
+
+    private Cookie cookieFlashAfter(String path) throws IOException, ServletException {
+        CookieFlash.setEnabled(true);
+        try {
+            request.setServletPath(path);
+            request.setMethod("GET");
+            request.setCookies(new Cookie(CookieFlash.COOKIE_NAME, "shown"));
+            dispatcher.doFilter(request, response, filterChain);
+            return response.getCookie(CookieFlash.COOKIE_NAME);
+        } finally {
+            CookieFlash.setEnabled(false);
+        }
+    }
 }
@@ -0,0 +1,106 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import java.util.Map;
+
+/**
+ * @author Igor Polevoy
+ */
+public class CookieFlashSpec implements JSpecSupport {
+
+    private MockHttpServletRequest request;
+
+    private CookieFlash flash(Cookie cookie) {
+        RequestContext.clear();
+        request = new MockHttpServletRequest("GET", "/books");
+        if (cookie != null) {
+            request.setCookies(cookie);
+        }
+        RequestContext.setHttpRequest(request);
+        return CookieFlash.get();
+    }
+
+    private Cookie send(CookieFlash flash) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        flash.send(response);
+        return response.getCookie(CookieFlash.COOKIE_NAME);
+    }
+
+    @Before
+    public void before() {
+        CookieFlash.setKey("0123456789abcdef0123456789abcdef".getBytes());
+    }
+
+    @After
+    public void after() {
+        RequestContext.clear();
+    }
+
+    @Test
+    public void shouldPassFlashToNextRequestInCookie() {
+        CookieFlash flash = flash(null);
+        a(flash.values()).shouldBeNull();
+        flash.put("message", "saved");
+        a(flash.values().get("message")).shouldBeEqual("saved");
+        Cookie cookie = send(flash);
+        a(cookie.isHttpOnly()).shouldBeTrue();
+        a(request.getSession(false)).shouldBeNull();
+
+        flash = flash(cookie);
+        Map<String, Object> values = flash.values();
+        a(values.get("message")).shouldBeEqual("saved");
+
+        Cookie deleted = send(flash);
+        a(deleted.getMaxAge()).shouldBeEqual(0);
+        a(flash(null).values()).shouldBeNull();
+    }
+
+    @Test
+    public void shouldIgnoreTamperedCookie() {
+        CookieFlash flash = flash(null);
+        flash.put("message", "saved");
+        Cookie cookie = send(flash);
+        String value = cookie.getValue();
+        Cookie tampered = new Cookie(CookieFlash.COOKIE_NAME, value.substring(0, value.length() - 2) + "AA");
+        a(flash(tampered).values()).shouldBeNull();
+    }
+
+    @Test
+    public void shouldNotSendCookieWithoutFlash() {
+        a(send(flash(null))).shouldBeNull();
+    }
+
+    @Test
+    public void shouldRequireKey() {
+        InitException e = null;
+        try {
+            CookieFlash.setKey(null);
+        } catch (InitException ex) {
+            e = ex;
+        }
+        the(e).shouldNotBeNull();
+        a(e.getMessage()).shouldContain("flashCookieKey");
+    }
+}
@@ -0,0 +1,206 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @author Igor Polevoy
+ */
+public class CookieSessionSpec implements JSpecSupport {
+
+    private static final byte[] OLD_KEY = "0123456789abcdef".getBytes();
+    private static final byte[] NEW_KEY = "fedcba9876543210fedcba9876543210".getBytes();
+
+    private CookieSessionStore store = new CookieSessionStore(new byte[][]{NEW_KEY, OLD_KEY}, 4000);
+
+    private MockHttpServletResponse response;
+
+    private CookieSessionRequest request(Cookie cookie) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books");
+        if (cookie != null) {
+            request.setCookies(cookie);
+        }
+        return new CookieSessionRequest(request, store);
+    }
+
+    private Cookie finish(CookieSessionRequest request, String body) throws IOException {
+        response = new MockHttpServletResponse();
+        CookieSessionResponse sessionResponse = new CookieSessionResponse(response, request);
+        if (body != null) {
+            sessionResponse.getWriter().write(body);
+        }
+        sessionResponse.finish();
+        return response.getCookie(CookieSessionStore.COOKIE_NAME);
+    }
+
+    @Test
+    public void shouldKeepSessionInCookie() throws IOException {
+        CookieSessionRequest request = request(null);
+        a(request.getSession(false)).shouldBeNull();
+        request.getSession().setAttribute("user", "joe");
+        String id = request.getSession().getId();
+        Cookie cookie = finish(request, null);
+        a(cookie.isHttpOnly()).shouldBeTrue();
+
+        request = request(cookie);
+        HttpSession session = request.getSession(false);
+        a(session.getAttribute("user")).shouldBeEqual("joe");
+        a(session.getId()).shouldBeEqual(id);
+        a(session.isNew()).shouldBeFalse();
+        a(finish(request, null)).shouldBeNull(); // not changed
+    }
+
+    @Test
+    public void shouldSaveSessionChangedWhileRendering() throws IOException {
+        CookieSessionRequest request = request(null);
+        response = new MockHttpServletResponse();
+        CookieSessionResponse sessionResponse = new CookieSessionResponse(response, request);
+        sessionResponse.getWriter().write("<form>");
+        sessionResponse.getWriter().flush();
+        request.getSession().setAttribute("token", "123");
+        sessionResponse.getWriter().write("</form>");
+        sessionResponse.finish();
+
+        a(response.getContentAsString()).shouldBeEqual("<form></form>");
+        a(request(response.getCookie(CookieSessionStore.COOKIE_NAME)).getSession().getAttribute("token")).shouldBeEqual("123");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldDetectChangesInsideSessionObjects() throws IOException {
+        CookieSessionRequest request = request(null);
+        request.getSession().setAttribute("flasher", new HashMap<>());
+        Cookie cookie = finish(request, null);
+
+        request = request(cookie);
+        ((Map) request.getSession().getAttribute("flasher")).put("count", 0);
+        cookie = finish(request, null);
+        a(cookie).shouldNotBeNull();
+        a(((Map) request(cookie).getSession().getAttribute("flasher")).get("count")).shouldBeEqual(0);
+    }
+
+    @Test
+    public void shouldNotReadCookieUnlessSessionIsUsed() throws IOException {
+        a(finish(request(new Cookie(CookieSessionStore.COOKIE_NAME, "garbage")), "hello")).shouldBeNull();
+        a(response.getContentAsString()).shouldBeEqual("hello");
+
+        CookieSessionRequest request = request(new Cookie(CookieSessionStore.COOKIE_NAME, "garbage"));
+        a(request.getSession().getAttribute("user")).shouldBeNull();
+        a(finish(request, null).getMaxAge()).shouldBeEqual(0); // invalid cookie is deleted
+    }
+
+    @Test
+    public void shouldRejectTamperedCookie() throws IOException {
+        CookieSessionRequest request = request(null);
+        request.getSession().setAttribute("user", "joe");
+        String value = finish(request, null).getValue();
+        char c = value.charAt(20);
+        String tampered = value.substring(0, 20) + (c == 'A' ? 'B' : 'A') + value.substring(21);
+
+        a(request(new Cookie(CookieSessionStore.COOKIE_NAME, tampered)).getSession().getAttribute("user")).shouldBeNull();
+    }
+
+    @Test
+    public void shouldDecryptCookiesOfOlderKeys() throws IOException {
+        CookieSessionStore newStore = store;
+        store = new CookieSessionStore(new byte[][]{OLD_KEY}, 4000);
+        CookieSessionRequest request = request(null);
+        request.getSession().setAttribute("user", "joe");
+        Cookie cookie = finish(request, null);
+
+        store = newStore;
+        a(request(cookie).getSession().getAttribute("user")).shouldBeEqual("joe");
+
+        store = new CookieSessionStore(new byte[][]{NEW_KEY}, 4000);
+        a(request(cookie).getSession().getAttribute("user")).shouldBeNull();
+    }
+
+    @Test
+    public void shouldNotSaveSessionLargerThanMaxSize() throws IOException {
+        CookieSessionRequest request = request(null);
+        StringBuilder large = new StringBuilder();
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            large.append((char) ('a' + random.nextInt(26)));
+        }
+        request.getSession().setAttribute("large", large.toString());
+        a(finish(request, null)).shouldBeNull();
+    }
+
+    @Test
+    public void shouldDeleteCookieOfInvalidatedSession() throws IOException {
+        CookieSessionRequest request = request(null);
+        request.getSession().setAttribute("user", "joe");
+        Cookie cookie = finish(request, null);
+
+        request = request(cookie);
+        request.getSession().invalidate();
+        a(request.getSession(false)).shouldBeNull();
+        a(finish(request, null).getMaxAge()).shouldBeEqual(0);
+    }
+
+    public static class Cart implements Serializable {
+        private final List<String> items = new ArrayList<>();
+    }
+
+    @Test
+    public void shouldReadOnlyAllowedClassesFromCookie() throws IOException {
+        CookieSessionRequest request = request(null);
+        Map<String, Object> user = new HashMap<>();
+        user.put("name", "joe");
+        user.put("roles", new ArrayList<>(Arrays.asList("admin", "user")));
+        user.put("since", new Date(0));
+        request.getSession().setAttribute("user", user);
+        request.getSession().setAttribute("cart", new Cart());
+        Cookie cookie = finish(request, null);
+
+        HttpSession session = request(cookie).getSession(false);
+        a(session.getAttribute("user")).shouldBeNull(); // session with a class not allowed is not read
+        a(session.isNew()).shouldBeTrue();
+
+        store = new CookieSessionStore(new byte[][]{NEW_KEY, OLD_KEY}, 4000, new String[]{Cart.class.getName()});
+        session = request(cookie).getSession(false);
+        a(session.getAttribute("user")).shouldBeEqual(user);
+        a(session.getAttribute("cart")).shouldBeA(Cart.class);
+    }
+
+    @Test
+    public void shouldRequireValidKeys() {
+        InitException e = null;
+        try {
+            new CookieSessionStore(new byte[][]{"short".getBytes()}, 4000);
+        } catch (InitException ex) {
+            e = ex;
+        }
+        the(e).shouldNotBeNull();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.javalite.activeweb.freemarker.FreeMarkerTemplateManager;
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.javalite.common.Collections.map;
+
+/**
+ * @author Igor Polevoy
+ */
+public class EncodedTextWriterSpec implements JSpecSupport {
+
+    @Test
+    public void shouldRenderSameTextAsCharacterWriter() throws IOException {
+        FreeMarkerTemplateManager manager = new FreeMarkerTemplateManager();
+        manager.setTemplateLocation("src/test/views");
+
+        for (String name : Arrays.asList("Zoë", "Jürgen")) {
+            StringWriter expected = new StringWriter();
+            manager.merge(map("name", name), "/encoding/static_text", null, null, expected);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            EncodedTextWriter writer = new EncodedTextWriter(out, StandardCharsets.UTF_8);
+            manager.merge(map("name", name), "/encoding/static_text", null, null, writer);
+            writer.flush();
+
+            a(new String(out.toByteArray(), StandardCharsets.UTF_8)).shouldBeEqual(expected.toString());
+        }
+    }
+
+    @Test
+    public void shouldEncodePartsOfReusedBufferWithNewContent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodedTextWriter writer = new EncodedTextWriter(out, StandardCharsets.UTF_8);
+        char[] buffer = new char[100];
+        Arrays.fill(buffer, 'a');
+        writer.write(buffer);
+        Arrays.fill(buffer, 'é');
+        writer.write(buffer, 0, 99);
+        writer.write(buffer, 1, 99);
+
+        char[] a = new char[100], e = new char[198];
+        Arrays.fill(a, 'a');
+        Arrays.fill(e, 'é');
+        a(new String(out.toByteArray(), StandardCharsets.UTF_8)).shouldBeEqual(new String(a) + new String(e));
+    }
+
+    @Test
+    public void shouldEncodeSurrogatePairSplitBetweenWrites() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodedTextWriter writer = new EncodedTextWriter(out, StandardCharsets.UTF_8);
+        String smile = "😀";
+        writer.write("smile: " + smile.charAt(0));
+        writer.write(smile.charAt(1));
+        writer.write("!");
+        a(new String(out.toByteArray(), StandardCharsets.UTF_8)).shouldBeEqual("smile: " + smile + "!");
+    }
+
+    @Test
+    public void shouldEncodeSharedTextFromManyThreads() throws Exception {
+        char[] text = new char[100];
+        Arrays.fill(text, 'ü');
+        StringBuilder expected = new StringBuilder();
+        for (int j = 0; j < 100; j++) {
+            expected.append(text);
+        }
+        List<Future<String>> results = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    EncodedTextWriter writer = new EncodedTextWriter(out, StandardCharsets.UTF_8);
+                    for (int j = 0; j < 100; j++) {
+                        writer.write(text);
+                    }
+                    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+                }));
+            }
+            for (Future<String> result : results) {
+                a(result.get()).shouldBeEqual(expected.toString());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.javalite.activeweb;
+
+import org.javalite.activejdbc.DB;
+import org.javalite.activejdbc.Registry;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+
+/**
+ * JDBC objects for specs that use ActiveJDBC without a database.
+ *
+ * @author Igor Polevoy
+ */
+public class FakeJdbc {
+
+    /**
+     * Models of specs. ActiveJDBC reads this file instead of <code>activejdbc_models.properties</code> only between
+     * {@link #attachModels()} and {@link #detachModels()}, so that other specs initializing ActiveJDBC
+     * do not load these models.
+     */
+    public static final String MODEL_FILE = "fake_jdbc_models.properties";
+
+    /**
+     * Columns of every table. ActiveJDBC reads them once, when models are first used.
+     */
+    public static final String[] COLUMNS = {"id", "title", "summary", "price"};
+
+    private static String modelFile;
+
+    private FakeJdbc() {}
+
+    /**
+     * Result of a method computed on every call.
+     */
+    public interface Answer {
+        Object get();
+    }
+
+    /**
+     * Creates a JDBC object returning given results.
+     *
+     * @param type JDBC interface.
+     * @param results pairs of method name and result, a result may be an {@link Answer}. Other methods return null.
+     * @return proxy implementing the interface.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T proxy(Class<T> type, Object... results) {
+        return (T) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                case "toString": return type.getSimpleName();
+            }
+            for (int i = 0; i < results.length; i += 2) {
+                if (method.getName().equals(results[i])) {
+                    return results[i + 1] instanceof Answer ? ((Answer) results[i + 1]).get() : results[i + 1];
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Attaches to current thread a connection of database "default" to MySQL with every table having
+     * {@link #COLUMNS}, and makes ActiveJDBC read models listed in {@link #MODEL_FILE}.
+     */
+    public static void attachModels() {
+        if (modelFile == null) {
+            modelFile = Registry.instance().getModelFile();
+        }
+        Registry.instance().setModelFile(MODEL_FILE);
+        Connection connection = proxy(Connection.class);
+        DatabaseMetaData metaData = proxy(DatabaseMetaData.class, "getDatabaseProductName", "MySQL",
+                "getConnection", connection, "getColumns", (Answer) FakeJdbc::columns);
+        new DB("default").attach(proxy(Connection.class, "getMetaData", metaData));
+    }
+
+    /**
+     * Detaches connection attached by {@link #attachModels()}.
+     */
+    public static void detachModels() {
+        new DB("default").detach();
+        Registry.instance().setModelFile(modelFile);
+    }
+
+    private static ResultSet columns() {
+        int[] row = {0};
+        return proxy(ResultSet.class, "next", (Answer) () -> ++row[0] <= COLUMNS.length,
+                "getString", (Answer) () -> COLUMNS[row[0] - 1], "getInt", 0);
+    }
+}
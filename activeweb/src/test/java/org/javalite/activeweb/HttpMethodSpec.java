@@ -0,0 +1,84 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * @author Igor Polevoy
+ */
+public class HttpMethodSpec implements JSpecSupport {
+
+    /**
+     * Fails if parameters are read, as that makes a container parse request body.
+     */
+    private static class BodyRequest extends MockHttpServletRequest {
+        BodyRequest(String contentType) {
+            super("POST", "/books");
+            setContentType(contentType);
+        }
+
+        @Override
+        public String getParameter(String name) {
+            throw new IllegalStateException("body parsed");
+        }
+    }
+
+    @Test
+    public void shouldDetectMethodFromQueryString() {
+        BodyRequest request = new BodyRequest("application/x-www-form-urlencoded");
+        request.setQueryString("id=1&_method=delete");
+        a(HttpMethod.getMethod(request)).shouldBeEqual(HttpMethod.DELETE);
+
+        request = new BodyRequest("application/x-www-form-urlencoded");
+        request.setQueryString("_method=PUT&id=1");
+        a(HttpMethod.getMethod(request)).shouldBeEqual(HttpMethod.PUT);
+    }
+
+    @Test
+    public void shouldDetectMethodFromHeader() {
+        BodyRequest request = new BodyRequest("application/json");
+        request.addHeader("X-HTTP-Method-Override", "patch");
+        a(HttpMethod.getMethod(request)).shouldBeEqual(HttpMethod.PATCH);
+    }
+
+    @Test
+    public void shouldNotParseBodyUnlessFormEncoded() {
+        BodyRequest request = new BodyRequest("application/json");
+        request.setQueryString("_methods=put");
+        a(HttpMethod.getMethod(request)).shouldBeEqual(HttpMethod.POST);
+    }
+
+    @Test
+    public void shouldDetectMethodFromFormAndCacheIt() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/books");
+        request.setContentType("application/x-www-form-urlencoded; charset=UTF-8");
+        request.addParameter("_method", "put");
+        a(HttpMethod.getMethod(request)).shouldBeEqual(HttpMethod.PUT);
+
+        request.setParameter("_method", "delete");
+        a(HttpMethod.getMethod(request)).shouldBeEqual(HttpMethod.PUT);
+    }
+
+    @Test
+    public void shouldNotOverrideGET() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books");
+        request.setQueryString("_method=delete");
+        a(HttpMethod.getMethod(request)).shouldBeEqual(HttpMethod.GET);
+    }
+}
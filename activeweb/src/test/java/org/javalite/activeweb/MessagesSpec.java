@@ -0,0 +1,65 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author Igor Polevoy
+ */
+public class MessagesSpec implements JSpecSupport {
+
+    @Test
+    public void shouldFormatMessagesOfDifferentLocales() {
+        a(Messages.message("greeting", Locale.US)).shouldBeEqual("Hello!");
+        a(Messages.message("greeting", Locale.FRANCE)).shouldBeEqual("Bonjour!");
+        a(Messages.message("greeting", Locale.US)).shouldBeEqual("Hello!");
+        a(Messages.message("does_not_exist", Locale.US)).shouldBeEqual("does_not_exist");
+    }
+
+    @Test
+    public void shouldFormatMessageWithArgumentFormatsConcurrently() {
+        List<String> messages = IntStream.range(0, 1000).parallel()
+                .mapToObj(i -> Messages.message("price", Locale.US, i + 0.5))
+                .collect(Collectors.toList());
+        for (int i = 0; i < messages.size(); i++) {
+            a(messages.get(i)).shouldBeEqual("Price: " + i + ".50");
+        }
+    }
+
+    @Test
+    public void shouldPreloadBundles() {
+        Messages.preload(Locale.GERMANY, Locale.forLanguageTag("xx"));
+        a(Messages.message("greeting", Locale.GERMANY)).shouldBeEqual("Halo!");
+    }
+
+    @Test
+    public void shouldNotCacheRequestedLocalesOrMissingKeys() {
+        Messages.message("greeting", Locale.US);
+        int cached = Messages.cachedFormats();
+        for (int i = 0; i < 100; i++) {
+            a(Messages.message("greeting", new Locale("en", "X" + i))).shouldBeEqual("Hello!");
+            a(Messages.message("missing_" + i, Locale.US)).shouldBeEqual("missing_" + i);
+        }
+        a(Messages.cachedFormats()).shouldBeEqual(cached);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Igor Polevoy
+ */
+public class OffHeapSessionSpec implements JSpecSupport {
+
+    private OffHeapSessionStore store = new OffHeapSessionStore(10000);
+    private MockHttpServletResponse response;
+
+    private static int reads;
+
+    static class Counted implements Serializable {
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            reads++;
+        }
+    }
+
+    private OffHeapSessionRequest request(String id) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books");
+        if (id != null) {
+            request.setCookies(new Cookie(OffHeapSessionStore.COOKIE_NAME, id));
+        }
+        response = new MockHttpServletResponse();
+        return new OffHeapSessionRequest(request, response, store);
+    }
+
+    private String newSession(String name, Serializable value) {
+        OffHeapSessionRequest request = request(null);
+        request.getSession().setAttribute(name, value);
+        request.saveSession();
+        return response.getCookie(OffHeapSessionStore.COOKIE_NAME).getValue();
+    }
+
+    @Test
+    public void shouldKeepSessionInStore() {
+        OffHeapSessionRequest request = request(null);
+        a(request.getSession(false)).shouldBeNull();
+        request.getSession().setAttribute("user", "joe");
+        request.getSession().setAttribute("role", "admin");
+        request.saveSession();
+        Cookie cookie = response.getCookie(OffHeapSessionStore.COOKIE_NAME);
+        a(cookie.isHttpOnly()).shouldBeTrue();
+        a(store.count()).shouldBeEqual(1);
+
+        HttpSession session = request(cookie.getValue()).getSession(false);
+        a(session.getId()).shouldBeEqual(cookie.getValue());
+        a(session.isNew()).shouldBeFalse();
+        a(session.getAttribute("user")).shouldBeEqual("joe");
+        a(session.getAttribute("role")).shouldBeEqual("admin");
+
+        a(request("unknown").getSession(false)).shouldBeNull();
+    }
+
+    @Test
+    public void shouldDeserializeOnlyAttributesThatAreRead() {
+        OffHeapSessionRequest request = request(null);
+        request.getSession().setAttribute("counted", new Counted());
+        request.getSession().setAttribute("user", "joe");
+        request.saveSession();
+        String id = response.getCookie(OffHeapSessionStore.COOKIE_NAME).getValue();
+
+        reads = 0;
+        request = request(id);
+        a(request.getSession().getAttribute("user")).shouldBeEqual("joe");
+        request.getSession().setAttribute("role", "admin");
+        request.saveSession();
+        a(reads).shouldBeEqual(0);
+
+        request = request(id);
+        a(request.getSession().getAttribute("counted")).shouldNotBeNull();
+        a(request.getSession().getAttribute("role")).shouldBeEqual("admin");
+        a(reads).shouldBeEqual(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldDetectChangesInsideSessionObjects() {
+        String id = newSession("flasher", new HashMap<>());
+
+        OffHeapSessionRequest request = request(id);
+        ((Map) request.getSession().getAttribute("flasher")).put("count", 0);
+        request.saveSession();
+
+        a(((Map) request(id).getSession().getAttribute("flasher")).get("count")).shouldBeEqual(0);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedSessions() {
+        String first = newSession("data", new byte[4000]);
+        String second = newSession("data", new byte[4000]);
+        a(request(first).getSession(false)).shouldNotBeNull(); // first becomes most recently used
+        String third = newSession("data", new byte[4000]);
+
+        a(store.size() <= 10000).shouldBeTrue();
+        a(request(second).getSession(false)).shouldBeNull();
+        a(request(first).getSession(false)).shouldNotBeNull();
+        a(request(third).getSession(false)).shouldNotBeNull();
+    }
+
+    @Test
+    public void shouldEvictIdleSessions() throws InterruptedException {
+        OffHeapSessionRequest request = request(null);
+        request.getSession().setAttribute("user", "joe");
+        request.getSession().setMaxInactiveInterval(1);
+        request.saveSession();
+        String id = response.getCookie(OffHeapSessionStore.COOKIE_NAME).getValue();
+
+        Thread.sleep(1100);
+        a(request(id).getSession(false)).shouldBeNull();
+        a(store.count()).shouldBeEqual(0);
+    }
+
+    @Test
+    public void shouldRemoveInvalidatedSession() {
+        String id = newSession("user", "joe");
+        OffHeapSessionRequest request = request(id);
+        request.getSession().invalidate();
+        a(request.getSession(false)).shouldBeNull();
+        a(store.count()).shouldBeEqual(0);
+    }
+
+    @Test
+    public void shouldMergeChangesOfConcurrentRequests() {
+        String id = newSession("user", "joe");
+        OffHeapSessionRequest first = request(id);
+        OffHeapSessionRequest second = request(id);
+        first.getSession().setAttribute("cart", "book");
+        second.getSession().setAttribute("theme", "dark");
+        second.getSession().removeAttribute("user");
+        first.saveSession();
+        second.saveSession();
+
+        HttpSession session = request(id).getSession(false);
+        a(session.getAttribute("cart")).shouldBeEqual("book");
+        a(session.getAttribute("theme")).shouldBeEqual("dark");
+        a(session.getAttribute("user")).shouldBeNull();
+    }
+
+    @Test
+    public void shouldNotStoreSessionInvalidatedByConcurrentRequest() {
+        String id = newSession("user", "joe");
+        OffHeapSessionRequest running = request(id);
+        running.getSession().setAttribute("cart", "book");
+
+        OffHeapSessionRequest logout = request(id);
+        logout.getSession().invalidate();
+        logout.saveSession();
+
+        running.saveSession();
+        a(request(id).getSession(false)).shouldBeNull();
+        a(store.count()).shouldBeEqual(0);
+    }
+
+    @Test
+    public void shouldReuseMemoryOfReplacedSessions() {
+        String id = newSession("data", new byte[3000]);
+        long size = store.size();
+        for (int i = 0; i < 100; i++) {
+            OffHeapSessionRequest request = request(id);
+            request.getSession().setAttribute("data", new byte[3000 + i % 2]);
+            request.saveSession();
+        }
+        a(store.size()).shouldBeEqual(size);
+        a(store.count()).shouldBeEqual(1);
+        a(((byte[]) request(id).getSession().getAttribute("data")).length).shouldBeEqual(3001);
+    }
+
+    @Test
+    public void shouldKeepSessionsOfConcurrentRequestsInStripes() throws InterruptedException {
+        OffHeapSessionStore striped = new OffHeapSessionStore(4 * 100000, 4);
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            byte value = (byte) t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    String id = striped.newId();
+                    byte[] data = new byte[200];
+                    Arrays.fill(data, value);
+                    striped.put(id, 0, System.currentTimeMillis(), 0, data);
+                    OffHeapSessionStore.StoredSession session = striped.get(id);
+                    if (session == null || !Arrays.equals(session.data, data)) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        a(errors.get()).shouldBeEqual(0);
+        a(striped.count()).shouldBeEqual(400);
+        a(striped.size()).shouldBeEqual(400L * OffHeapSessionStore.BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.javalite.activejdbc.DB;
+import org.javalite.activeweb.FakeJdbc.Answer;
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.javalite.activeweb.FakeJdbc.proxy;
+
+/**
+ * @author Igor Polevoy
+ */
+public class QueryCursorSpec implements JSpecSupport {
+
+    private int row, closed;
+
+    @Before
+    public void before() {
+        ResultSetMetaData metaData = proxy(ResultSetMetaData.class, "getColumnCount", 1, "getColumnLabel", "ID");
+        ResultSet resultSet = proxy(ResultSet.class, "getMetaData", metaData, "next", (Answer) () -> ++row <= 3,
+                "getObject", (Answer) () -> row);
+        PreparedStatement statement = proxy(PreparedStatement.class, "executeQuery", resultSet,
+                "close", (Answer) () -> closed++);
+        new DB("default").attach(proxy(Connection.class, "prepareStatement", statement));
+        RequestContext.setHttpRequest(new MockHttpServletRequest());
+    }
+
+    @After
+    public void after() {
+        new DB("default").detach();
+        RequestContext.clear();
+    }
+
+    @Test
+    public void shouldCloseStatementAfterLastRow() {
+        int count = 0;
+        for (Map<String, Object> row : new QueryCursor("select id from orders")) {
+            a(row.get("id")).shouldBeEqual(++count);
+        }
+        a(count).shouldBeEqual(3);
+        a(closed).shouldBeEqual(1);
+        RequestContext.closeCursors();
+        a(closed).shouldBeEqual(1);
+    }
+
+    @Test
+    public void shouldCloseStatementOfPartlyReadCursorAtEndOfRequest() {
+        Iterator<Map<String, Object>> rows = new QueryCursor("select id from orders").iterator();
+        rows.next();
+        a(closed).shouldBeEqual(0);
+        RequestContext.closeCursors();
+        a(closed).shouldBeEqual(1);
+    }
+}
@@ -19,11 +19,14 @@ import app.controllers.BookController;
 import app.controllers.VehicleRegistrationController;
 import app.controllers.admin.special2.special3.Special3Controller;
 import org.javalite.test.jspec.JSpecSupport;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.mock.web.MockFilterConfig;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static org.javalite.common.Collections.map;
 
@@ -35,6 +38,31 @@ public class RouteGenerationSpec implements JSpecSupport {
     @Before
     public void before(){
         Configuration.setFilterConfig(new MockFilterConfig());
+        Router.setSortQueryParams(true);
+    }
+
+    @After
+    public void after(){
+        Router.setSortQueryParams(Configuration.sortQueryParams());
+    }
+
+    @Test
+    public void shouldLimitCachedUriTemplates(){
+        for (int i = 0; i <= Router.MAX_URI_TEMPLATES; i++) {
+            a(Router.generate("/books", "action" + i, null, false, new HashMap())).shouldBeEqual("/books/action" + i);
+        }
+        a(Router.cachedUriTemplates()).shouldBeEqual(Router.MAX_URI_TEMPLATES);
+    }
+
+    @Test
+    public void shouldKeepOrderOfQueryParamsIfNotSorted(){
+        Router.setSortQueryParams(false);
+        Map params = new LinkedHashMap();
+        params.put("stage", 1);
+        params.put("format", "simple json");
+        params.put("name", "Jos\u00e9 & co");
+        a(Router.generate("/books", "show", "123", false, params))
+                .shouldBeEqual("/books/show/123?stage=1&format=simple+json&name=Jos%C3%A9+%26+co");
     }
 
     @Test
@@ -0,0 +1,81 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb;
+
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Map;
+
+/**
+ * @author Igor Polevoy
+ */
+public class SessionHelperSpec implements JSpecSupport {
+
+    private MockHttpServletRequest request;
+
+    @Before
+    public void before() {
+        request = new MockHttpServletRequest();
+        RequestContext.setHttpRequest(request);
+    }
+
+    @After
+    public void after() {
+        RequestContext.clear();
+    }
+
+    @Test
+    public void shouldNotCreateSessionToReadAttributes() {
+        a(SessionHelper.getSessionAttributes().isEmpty()).shouldBeTrue();
+        a(request.getSession(false)).shouldBeNull();
+    }
+
+    @Test
+    public void shouldReadAttributesOncePerRequest() {
+        request.getSession().setAttribute("user", "joe");
+        Map<String, Object> attributes = SessionHelper.getSessionAttributes();
+        a(attributes.get("user")).shouldBeEqual("joe");
+
+        request.getSession().setAttribute("direct", "write");
+        a(SessionHelper.getSessionAttributes().containsKey("direct")).shouldBeFalse();
+
+        Exception e = null;
+        try {
+            attributes.put("user", "jane");
+        } catch (UnsupportedOperationException ex) {
+            e = ex;
+        }
+        the(e).shouldNotBeNull();
+    }
+
+    @Test
+    public void shouldKeepAttributesCurrentWithSessionFacade() {
+        Map<String, Object> attributes = SessionHelper.getSessionAttributes();
+        SessionFacade session = new SessionFacade();
+        session.put("user", "joe");
+        a(attributes.get("user")).shouldBeEqual("joe");
+        session.remove("user");
+        a(attributes.containsKey("user")).shouldBeFalse();
+
+        session.put("user", "joe");
+        session.invalidate();
+        a(SessionHelper.getSessionAttributes().isEmpty()).shouldBeTrue();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.controller_filters;
+
+import org.javalite.activejdbc.connection_config.DbConfiguration;
+import org.javalite.activeweb.AbstractControllerConfig;
+import org.javalite.activeweb.AbstractDBConfig;
+import org.javalite.activeweb.AppContext;
+import org.javalite.activeweb.RequestSpec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * @author Igor Polevoy
+ */
+public class DBConnectionFilterSpec extends RequestSpec {
+
+    private static final List<String> calls = new ArrayList<>();
+
+    /**
+     * Driver of URLs "jdbc:fake:name", recording statements and transactions of connections.
+     */
+    public static class FakeDriver implements Driver {
+        static {
+            try {
+                DriverManager.registerDriver(new FakeDriver());
+            } catch (SQLException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        @Override
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            String name = url.substring("jdbc:fake:".length());
+            calls.add(name + ": open");
+            return record(Connection.class, name);
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:fake:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T record(Class<T> type, String name) {
+        return (T) Proxy.newProxyInstance(DBConnectionFilterSpec.class.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            String methodName = method.getName();
+            Class<?> returnType = method.getReturnType();
+            if (methodName.equals("equals")) {
+                return proxy == args[0];
+            } else if (methodName.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (methodName.equals("toString")) {
+                return name;
+            } else if (methodName.equals("setAutoCommit") && !((Boolean) args[0])) {
+                calls.add(name + ": begin");
+            } else if (methodName.equals("commit") || methodName.equals("close") && type == Connection.class) {
+                calls.add(name + ": " + methodName);
+            } else if ((methodName.startsWith("prepare") || methodName.startsWith("execute")) && args != null
+                    && args[0] instanceof String) {
+                calls.add(name + ": " + args[0]);
+            } else if (methodName.equals("getAutoCommit")) {
+                return true;
+            }
+            if (returnType == boolean.class) {
+                return false;
+            } else if (returnType == int.class || returnType == long.class) {
+                return returnType == int.class ? (Object) 0 : (Object) 0L;
+            } else if (returnType.isInterface() && returnType.getName().startsWith("java.sql.")) {
+                return record(returnType, name);
+            }
+            return null;
+        });
+    }
+
+    @Before
+    public void before() {
+        calls.clear();
+        DbConfiguration.resetConnectionWrappers();
+        AbstractDBConfig.clearReplicaConnectionWrappers();
+        new AbstractDBConfig() {
+            public void init(AppContext appContext) {
+                environment("development").jdbc(FakeDriver.class.getName(), "jdbc:fake:primary", "user", "");
+                replica("development").jdbc(FakeDriver.class.getName(), "jdbc:fake:replica", "user", "");
+            }
+        }.init(null);
+    }
+
+    @After
+    public void after() {
+        DbConfiguration.resetConnectionWrappers();
+        AbstractDBConfig.clearReplicaConnectionWrappers();
+    }
+
+    private void setupControllerConfig(DBConnectionFilter filter) {
+        AbstractControllerConfig config = new AbstractControllerConfig() {
+            public void init(AppContext context) {
+                add(filter.readFromReplicas(DBConnectionFilter.ReplicaSelection.ROUND_ROBIN));
+            }
+        };
+        config.init(new AppContext());
+        config.completeInit();
+    }
+
+    private String call(String method, String path) throws IOException, ServletException {
+        request.setMethod(method);
+        request.setServletPath(path);
+        dispatcher.doFilter(request, response, filterChain);
+        a(response.getContentAsString()).shouldBeEqual("OK");
+        return calls.toString();
+    }
+
+    @Test
+    public void shouldReadGetRequestFromReplica() throws IOException, ServletException {
+        setupControllerConfig(new DBConnectionFilter(null, true));
+        a(call("GET", "/replica")).shouldBeEqual("[replica: open, replica: select * from books, replica: close]");
+    }
+
+    @Test
+    public void shouldWritePostRequestToPrimaryInTransaction() throws IOException, ServletException {
+        setupControllerConfig(new DBConnectionFilter(null, true));
+        a(call("POST", "/replica/create")).shouldBeEqual("[primary: open, primary: begin, "
+                + "primary: insert into books (title) values (?), primary: commit, primary: close]");
+    }
+
+    @Test
+    public void shouldReadReadOnlyPostRequestFromReplica() throws IOException, ServletException {
+        setupControllerConfig(new DBConnectionFilter(null, true));
+        a(call("POST", "/replica/report")).shouldBeEqual("[replica: open, replica: select count(*) from books, replica: close]");
+    }
+
+    @Test
+    public void shouldSwitchToPrimaryOnWriteOfGetRequest() throws IOException, ServletException {
+        setupControllerConfig(new DBConnectionFilter());
+        a(call("GET", "/replica/save")).shouldBeEqual("[replica: open, primary: open, "
+                + "primary: update books set title = 'Walden', primary: select * from books, replica: close, primary: close]");
+    }
+
+    @Test
+    public void shouldSwitchToPrimaryOnExplicitTransactionOfGetRequest() throws IOException, ServletException {
+        setupControllerConfig(new DBConnectionFilter(null, false, true));
+        a(call("GET", "/replica/transfer")).shouldBeEqual("[primary: open, primary: begin, primary: select * from accounts, "
+                + "primary: update accounts set balance = 0, primary: commit, primary: close]");
+    }
+}
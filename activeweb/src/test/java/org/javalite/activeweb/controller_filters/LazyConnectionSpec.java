@@ -0,0 +1,84 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.controller_filters;
+
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Igor Polevoy
+ */
+public class LazyConnectionSpec implements JSpecSupport {
+
+    private int opened;
+    private List<String> calls = new ArrayList<>();
+
+    private Connection lazyConnection() {
+        return LazyConnection.create(() -> {
+            opened++;
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                    (proxy, method, args) -> {
+                        calls.add(method.getName() + (args == null ? "" : args[0]));
+                        return method.getName().equals("isClosed") ? false : null;
+                    });
+        });
+    }
+
+    @Test
+    public void shouldNotOpenConnectionForTransactionOfUnusedConnection() throws SQLException {
+        Connection connection = lazyConnection();
+        connection.setAutoCommit(false);
+        a(connection.getAutoCommit()).shouldBeFalse();
+        connection.commit();
+        connection.rollback();
+        connection.close();
+        a(connection.isClosed()).shouldBeTrue();
+        a(connection).shouldBeEqual(connection);
+        a(opened).shouldBeEqual(0);
+    }
+
+    @Test
+    public void shouldOpenConnectionOnFirstUse() throws SQLException {
+        Connection connection = lazyConnection();
+        connection.setAutoCommit(false);
+        connection.prepareStatement("select 1");
+        connection.prepareStatement("select 2");
+        connection.commit();
+        connection.close();
+        a(opened).shouldBeEqual(1);
+        a(calls.toString()).shouldBeEqual("[setAutoCommitfalse, prepareStatementselect 1, prepareStatementselect 2, commit, close]");
+    }
+
+    @Test
+    public void shouldNotOpenClosedConnection() throws SQLException {
+        Connection connection = lazyConnection();
+        connection.close();
+        Exception e = null;
+        try {
+            connection.prepareStatement("select 1");
+        } catch (RuntimeException ex) {
+            e = ex;
+        }
+        the(e).shouldNotBeNull();
+        a(opened).shouldBeEqual(0);
+    }
+}
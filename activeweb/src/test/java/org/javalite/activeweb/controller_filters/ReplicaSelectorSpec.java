@@ -0,0 +1,56 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.controller_filters;
+
+import org.javalite.activejdbc.connection_config.ConnectionSpecWrapper;
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Igor Polevoy
+ */
+public class ReplicaSelectorSpec implements JSpecSupport {
+
+    private ConnectionSpecWrapper replica1 = new ConnectionSpecWrapper(), replica2 = new ConnectionSpecWrapper();
+    private List<ConnectionSpecWrapper> replicas = Arrays.asList(replica1, replica2);
+
+    @Test
+    public void shouldUseReplicasInTurn() {
+        ReplicaSelector selector = new ReplicaSelector(false);
+        a(selector.acquire(replicas)).shouldBeTheSameAs(replica1);
+        a(selector.acquire(replicas)).shouldBeTheSameAs(replica2);
+        a(selector.acquire(replicas)).shouldBeTheSameAs(replica1);
+        a(selector.inUse(replica1)).shouldBeEqual(2);
+        selector.release(replica1);
+        a(selector.inUse(replica1)).shouldBeEqual(1);
+        a(selector.acquire(new ArrayList<>())).shouldBeNull();
+    }
+
+    @Test
+    public void shouldUseLeastLoadedReplica() {
+        ReplicaSelector selector = new ReplicaSelector(true);
+        a(selector.acquire(replicas)).shouldBeTheSameAs(replica1);
+        a(selector.acquire(replicas)).shouldBeTheSameAs(replica2);
+        selector.release(replica2);
+        a(selector.acquire(replicas)).shouldBeTheSameAs(replica2); // replica1 is still in use
+        a(selector.acquire(replicas)).shouldBeTheSameAs(replica2); // both in use once, replica2 is next in turn
+        a(selector.acquire(replicas)).shouldBeTheSameAs(replica1);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModelException;
+import org.javalite.activejdbc.Model;
+import org.javalite.activejdbc.annotations.Table;
+import org.javalite.activeweb.FakeJdbc;
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * @author Igor Polevoy
+ */
+public class ActiveWebObjectWrapperSpec implements JSpecSupport {
+
+    @Table("books")
+    public static class Book extends Model {}
+
+    @Table("articles")
+    public static class Article extends Model {
+        public String getTitle() {
+            return "Title: " + get("title");
+        }
+
+        public String summary() {
+            return "Summary of " + get("title");
+        }
+    }
+
+    public static class Shelf implements Iterable<String> {
+        public String getName() {
+            return "Fiction";
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return Collections.singletonList("Walden").iterator();
+        }
+    }
+
+    @Before
+    public void before() {
+        FakeJdbc.attachModels();
+    }
+
+    @After
+    public void after() {
+        FakeJdbc.detachModels();
+    }
+
+    @Test
+    public void shouldReadAttributesOfModel() throws TemplateModelException {
+        TemplateHashModel book = (TemplateHashModel) new ActiveWebObjectWrapper().wrap(new Book().set("title", "Walden"));
+        a(book.get("title").toString()).shouldBeEqual("Walden");
+        a(book.get("summary")).shouldBeNull();
+    }
+
+    @Test
+    public void shouldPreferMethodsOfModelOverAttributes() throws TemplateModelException {
+        Article article = new Article();
+        article.set("title", "Walden", "summary", "Life in the woods");
+        TemplateHashModel model = (TemplateHashModel) new ActiveWebObjectWrapper().wrap(article);
+        a(model.get("title").toString()).shouldBeEqual("Title: Walden");
+        a(model.get("summary")).shouldNotBeNull();
+        a(model.get("summary").toString()).shouldNotBeEqual("Life in the woods");
+    }
+
+    @Test
+    public void shouldWrapIterablesThatAreNotCursorsAsBeans() throws TemplateModelException {
+        TemplateHashModel shelf = (TemplateHashModel) new ActiveWebObjectWrapper().wrap(new Shelf());
+        a(shelf.get("name").toString()).shouldBeEqual("Fiction");
+    }
+}
@@ -0,0 +1,140 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import org.javalite.activeweb.Configuration;
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import static org.javalite.common.Collections.map;
+
+/**
+ * @author Igor Polevoy
+ */
+public class CacheTagSpec implements JSpecSupport {
+
+    private FreeMarkerTemplateManager manager = new FreeMarkerTemplateManager();
+
+    @Before
+    public void before() {
+        manager.setTemplateLocation("src/test/views");
+        FragmentCache.clear();
+    }
+
+    @After
+    public void after() {
+        FragmentCache.setMaxSize(Configuration.getFragmentCacheSize());
+        FragmentCache.clear();
+    }
+
+    @Test
+    public void shouldRenderFragmentFromCache() {
+        a(render(map("lang", "en", "items", "home, about"))).shouldBeEqual("home, about");
+        a(render(map("lang", "en", "items", "changed"))).shouldBeEqual("home, about");
+        a(FragmentCache.get("menu/en")).shouldBeEqual("home, about");
+    }
+
+    @Test
+    public void shouldCacheFragmentPerVaryValue() {
+        a(render(map("lang", "en", "items", "home"))).shouldBeEqual("home");
+        a(render(map("lang", "fr", "items", "accueil"))).shouldBeEqual("accueil");
+        a(render(map("lang", "en", "items", "changed"))).shouldBeEqual("home");
+    }
+
+    @Test
+    public void shouldEvictFragmentsByKeyPrefix() {
+        render(map("lang", "en", "items", "home"));
+        render(map("lang", "fr", "items", "accueil"));
+        FragmentCache.put("footer", "contacts", 0);
+
+        a(FragmentCache.evict("menu")).shouldBeEqual(2);
+        a(FragmentCache.size()).shouldBeEqual("contacts".length());
+        a(render(map("lang", "en", "items", "changed"))).shouldBeEqual("changed");
+    }
+
+    @Test
+    public void shouldNotEvictFragmentsOfOtherKeysStartingWithSameText() {
+        render(map("lang", "en", "items", "home"));
+        FragmentCache.put("menu", "home", 0);
+        FragmentCache.put("menus", "all", 0);
+
+        a(FragmentCache.evict("menu")).shouldBeEqual(2);
+        a(FragmentCache.get("menus")).shouldBeEqual("all");
+    }
+
+    @Test
+    public void shouldNotMixUpKeysOfValuesWithSlashes() {
+        a(render(map("lang", "en/us", "items", "home"))).shouldBeEqual("home");
+        a(render(map("lang", "en%2Fus", "items", "other"))).shouldBeEqual("other");
+        a(render(map("lang", "en/us", "items", "changed"))).shouldBeEqual("home");
+
+        a(FragmentCache.evict("menu")).shouldBeEqual(2);
+    }
+
+    @Test
+    public void shouldKeepUsedFragmentWhileAddingMany() {
+        FragmentCache.setMaxSize(20);
+        FragmentCache.put("used", "1234", 0);
+        for (int i = 0; i < 1000; i++) {
+            FragmentCache.get("used");
+            FragmentCache.put("fragment" + i, "1234", 0);
+            a(FragmentCache.size() <= 20).shouldBeTrue();
+        }
+        a(FragmentCache.get("used")).shouldBeEqual("1234");
+        a(FragmentCache.get("fragment999")).shouldBeEqual("1234");
+        a(FragmentCache.get("fragment0")).shouldBeNull();
+    }
+
+    @Test
+    public void shouldExpireFragments() throws InterruptedException {
+        FragmentCache.put("menu/en", "home", 1);
+        Thread.sleep(5);
+        a(FragmentCache.get("menu/en")).shouldBeNull();
+        a(FragmentCache.size()).shouldBeEqual(0);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedFragmentsWhenFull() {
+        FragmentCache.setMaxSize(10);
+        FragmentCache.put("a", "1234", 0);
+        FragmentCache.put("b", "1234", 0);
+        FragmentCache.get("a");
+        FragmentCache.put("c", "1234", 0);
+
+        a(FragmentCache.get("a")).shouldBeEqual("1234");
+        a(FragmentCache.get("b")).shouldBeNull();
+        a(FragmentCache.get("c")).shouldBeEqual("1234");
+
+        FragmentCache.put("d", "12345678901", 0);
+        a(FragmentCache.get("d")).shouldBeNull();
+    }
+
+    @Test
+    public void shouldBeAvailableAsTag() {
+        a(manager.getTag("cache") instanceof CacheTag).shouldBeTrue();
+    }
+
+    private String render(Map values) {
+        StringWriter sw = new StringWriter();
+        manager.merge(values, "/cache/menu", sw);
+        return sw.toString();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+Copyright 2009-2016 Igor Polevoy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package org.javalite.activeweb.freemarker;
+
+import org.javalite.activejdbc.Model;
+import org.javalite.activejdbc.annotations.Table;
+import org.javalite.activeweb.CompilationException;
+import org.javalite.activeweb.FakeJdbc;
+import org.javalite.activeweb.ViewException;
+import org.javalite.test.jspec.JSpecSupport;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.javalite.common.Collections.map;
+
+/**
+ * @author Igor Polevoy
+ */
+public class CompiledTemplateManagerSpec implements JSpecSupport {
+
+    public static class Author {
+        public String getName() {
+            return "Mark Twain";
+        }
+    }
+
+    @Table("editions")
+    public static class Edition extends Model {}
+
+    @Test
+    public void shouldRenderSameOutputAsFreeMarker() {
+        FreeMarkerTemplateManager freeMarker = new FreeMarkerTemplateManager();
+        freeMarker.setTemplateLocation("src/test/views");
+        CompiledTemplateManager compiled = new CompiledTemplateManager();
+        compiled.setTemplateLocation("src/test/views");
+
+        a(render(compiled, 25)).shouldBeEqual(render(freeMarker, 25));
+        a(render(compiled, 25)).shouldContain("<title>Books of Mark Twain</title>");
+    }
+
+    @Test
+    public void shouldFormatValuesLikeFreeMarker() {
+        FreeMarkerTemplateManager freeMarker = new FreeMarkerTemplateManager();
+        freeMarker.setTemplateLocation("src/test/views");
+        CompiledTemplateManager compiled = new CompiledTemplateManager();
+        compiled.setTemplateLocation("src/test/views");
+        a(render(compiled, 1234.5)).shouldContain("Tom Sawyer - 1234.5");
+        a(render(compiled, 1234.5)).shouldBeEqual(render(freeMarker, 1234.5));
+
+        for (FreeMarkerTemplateManager manager : new FreeMarkerTemplateManager[]{freeMarker, compiled}) {
+            manager.getConfiguration().setNumberFormat("number");
+            manager.getConfiguration().setLocale(Locale.US);
+        }
+        a(render(compiled, 1234)).shouldContain("Tom Sawyer - 1,234");
+        a(render(compiled, 1234)).shouldBeEqual(render(freeMarker, 1234));
+    }
+
+    @Test
+    public void shouldReadAttributesOfModels() {
+        FreeMarkerTemplateManager freeMarker = new FreeMarkerTemplateManager();
+        freeMarker.setTemplateLocation("src/test/views");
+        CompiledTemplateManager compiled = new CompiledTemplateManager();
+        compiled.setTemplateLocation("src/test/views");
+        FakeJdbc.attachModels();
+        try {
+            Edition edition = new Edition();
+            edition.set("title", "Tom Sawyer", "price", 25);
+            a(renderBook(compiled, edition)).shouldContain("Tom Sawyer - 25");
+            a(renderBook(compiled, edition)).shouldBeEqual(renderBook(freeMarker, edition));
+        } finally {
+            FakeJdbc.detachModels();
+        }
+    }
+
+    @Test
+    public void shouldRejectDates() {
+        CompiledTemplateManager compiled = new CompiledTemplateManager();
+        compiled.setTemplateLocation("src/test/views");
+        ViewException exception = null;
+        try {
+            render(compiled, new Date());
+        } catch (ViewException e) {
+            exception = e;
+        }
+        the(exception).shouldNotBeNull();
+        a(exception.getMessage()).shouldContain("${book.price}");
+    }
+
+    @Test
+    public void shouldRenderNotCompiledTemplatesWithFreeMarker() {
+        CompiledTemplateManager compiled = new CompiledTemplateManager();
+        compiled.setTemplateLocation("src/test/views");
+        StringWriter sw = new StringWriter();
+        compiled.merge(map(), "/compiled/not_compiled", null, null, sw);
+        a(sw.toString()).shouldBeEqual("12\n");
+    }
+
+    @Test
+    public void shouldGenerateCommittedSources() throws IOException {
+        Path output = Files.createTempDirectory("compiled");
+        new TemplateCompiler("app.views").compileAll(new File("src/test/views"), output.toFile());
+        for (String name : new String[]{"IndexTemplate", "BookPartialTemplate", "LayoutTemplate"}) {
+            a(read(output.resolve("app/views/compiled/" + name + ".java")))
+                    .shouldBeEqual(read(new File("src/test/java/app/views/compiled/" + name + ".java").toPath()));
+        }
+    }
+
+    @Test
+    public void shouldRejectUnsupportedDirectives() {
+        TemplateCompiler compiler = new TemplateCompiler("app.views");
+        String[] sources = {"line\n<#list books as book>${book}</#list>", "${price * 2}", "<@link_to action=\"x\">x</@>",
+                "<@render partial=\"book\" collection=books/>", "<@content for=\"title\">title"};
+        for (String source : sources) {
+            CompilationException exception = null;
+            try {
+                compiler.compile("/books/index.ftl", source);
+            } catch (CompilationException e) {
+                exception = e;
+            }
+            the(exception).shouldNotBeNull();
+            a(exception.getMessage()).shouldContain("/books/index.ftl");
+        }
+    }
+
+    private String render(FreeMarkerTemplateManager manager, Object price) {
+        return renderBook(manager, map("title", "Tom Sawyer", "price", price));
+    }
+
+    private String renderBook(FreeMarkerTemplateManager manager, Object book) {
+        Map<String, Object> values = map("greeting", "Hello", "author", new Author(), "book", book);
+        StringWriter sw = new StringWriter();
+        manager.merge(values, "/compiled/index", "/compiled/layout", null, sw);
+        return sw.toString();
+    }
+
+    private String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+}
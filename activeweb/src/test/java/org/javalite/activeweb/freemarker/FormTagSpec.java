@@ -70,6 +70,13 @@ public class FormTagSpec implements JSpecSupport {
         a(sw.toString()).shouldBeEqual("<form action=\"/simple_context/simple\">&nbsp;</form>");
     }
 
+    @Test
+    public void shouldRenderNestedTags(){
+        StringWriter sw = new StringWriter();
+        manager.merge(map("context_path", "/simple_context", "activeweb", map("controller", "simple", "restful", false)), "/form/form_with_nested_tags", sw);
+        a(sw.toString()).shouldBeEqual("<form action=\"/simple_context/simple\"><a href=\"/simple_context/simple/index\" data-link=\"aw\">Back</a></form>");
+    }
+
     @Test
     public void shouldRenderSimpleFormWithAction(){
         StringWriter sw = new StringWriter();
@@ -58,4 +58,26 @@ public class FreeMarkerTagSpec implements JSpecSupport {
         manager.merge(map("name", "Earthlings!!"), "/greeting/index1", sw);
         a(sw.toString()).shouldBeEqual("<greeting> this is just a greeting: Hello, Earthlings!! </greeting>");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldRenderCachedInnerTemplateWithNewValues() {
+        StringWriter sw = new StringWriter();
+        manager.merge(map("name", "earthlings!!"), "/greeting/index1", sw);
+        sw = new StringWriter();
+        manager.merge(map("name", "martians!!"), "/greeting/index1", sw);
+        a(sw.toString()).shouldBeEqual("<greeting> this is just a greeting: Hello, martians!! </greeting>");
+        a(manager.getConfiguration().getInlineTemplateMisses()).shouldBeEqual(1);
+        a(manager.getConfiguration().getInlineTemplateHits()).shouldBeEqual(1);
+    }
+
+    @Test
+    public void shouldNotCacheInnerTemplatesWithoutKey() {
+        StringWriter sw = new StringWriter();
+        manager.merge(map("name", "earthlings!!"), "/greeting/index", sw);
+        sw = new StringWriter();
+        manager.merge(map("name", "martians!!"), "/greeting/index", sw);
+        a(sw.toString()).shouldBeEqual("<greeting> this is just a greeting: Hello, martians!! </greeting>");
+        a(manager.getConfiguration().getInlineTemplateMisses()).shouldBeEqual(0);
+        a(manager.getConfiguration().getInlineTemplateHits()).shouldBeEqual(0);
+    }
+}
@@ -17,17 +17,23 @@ limitations under the License.
 package org.javalite.activeweb.freemarker;
 
 import freemarker.template.TemplateException;
+import org.javalite.activeweb.InitException;
+import org.javalite.activeweb.ViewException;
 import org.javalite.test.XPathHelper;
 import org.javalite.test.jspec.JSpecSupport;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.StringWriter;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.javalite.common.Collections.map;
 
@@ -159,4 +165,149 @@ public class FreeMarkerTemplateManagerSpec implements JSpecSupport {
             the(e.getMessage()).shouldContain("Failed to render template: '/partial/missing-partial.ftl' without layout.  Template not found for name \"/partial/_missing.ftl\".");
         }
     }
+
+    @Test
+    public void shouldStreamTemplateIntoLayout() {
+
+        manager.setStreamLayouts(true);
+        manager.setDefaultLayout("/layouts/default_layout");
+
+        StringWriter sw = new StringWriter();
+        manager.merge(map("name", "Jim"), "/abc_controller/test_template", sw);
+        String generated = sw.toString();
+
+        a(XPathHelper.selectText("//body/div[1]", generated)).shouldEqual("this is a header");
+        a(XPathHelper.selectText("//body/div[2]", generated)).shouldEqual("name is: Jim");
+        a(XPathHelper.selectText("//body/div[3]", generated)).shouldEqual("this is a footer");
+    }
+
+    @Test
+    public void yieldShouldRenderContentForWhenStreamingLayout() {
+
+        manager.setStreamLayouts(true);
+        manager.setDefaultLayout("/layouts/default_layout_with_yeld");
+
+        StringWriter sw = new StringWriter();
+        manager.merge(map("name", "Jim"), "/abc_controller/contains_content_for", sw);
+        String generated = sw.toString();
+
+        a(XPathHelper.selectText("//title", generated)).shouldEqual("sample content");
+        a(XPathHelper.selectText("//div[@id='content']", generated)).shouldContain("name is: Jim");
+
+        sw = new StringWriter();
+        manager.setDefaultLayout("/layouts/default_layout_with_yeld_js");
+        manager.merge(map("name", "Jim"), "/abc_controller/multiple_content_for", sw);
+        a(XPathHelper.count("//script", sw.toString())).shouldEqual(3);
+    }
+
+    @Test
+    public void shouldWriteLayoutHeadBeforeTemplateWhenStreamingLayout() {
+
+        manager.setStreamLayouts(true);
+        manager.setDefaultLayout("/layouts/default_layout");
+
+        StringWriter sw = new StringWriter();
+        try {
+            manager.merge(map("name", "Jim"), "/abc_controller/fails_to_render", sw);
+        } catch (ViewException e) {
+            the(e.getMessage()).shouldContain("Failed to render template: '/abc_controller/fails_to_render.ftl' with layout");
+        }
+        the(sw.toString()).shouldContain("this is a header");
+        the(sw.toString()).shouldContain("name is: Jim");
+        the(sw.toString()).shouldNotContain("this is a footer");
+    }
+
+    @Test
+    public void shouldReloadChangedTemplatesInDevelopment() throws IOException {
+        File dir = Files.createTempDirectory("templates").toFile();
+        File partial = new File(dir, "reload/_part.ftl");
+        partial.getParentFile().mkdirs();
+        Files.write(new File(dir, "reload/index.ftl").toPath(), "[<@render partial=\"part\"/>]".getBytes());
+        Files.write(partial.toPath(), "old".getBytes());
+        manager.setTemplateLocation(dir.getPath());
+
+        StringWriter sw = new StringWriter();
+        manager.merge(new HashMap(), "/reload/index", null, null, sw);
+        a(sw.toString()).shouldBeEqual("[old]");
+
+        Files.write(partial.toPath(), "new".getBytes());
+        partial.setLastModified(partial.lastModified() + 2000);
+
+        sw = new StringWriter();
+        manager.merge(new HashMap(), "/reload/index", null, null, sw);
+        a(sw.toString()).shouldBeEqual("[new]");
+    }
+
+    @Test
+    public void shouldCollectTemplateStatistics() {
+        manager.resetTemplateStatistics();
+        for (int i = 0; i < 2; i++) {
+            manager.merge(map("fruit", "apple"), "/partial/main_with_simple_partial", null, null, new StringWriter());
+        }
+
+        TemplateStatistics page = manager.getTemplateStatistics().get("partial/main_with_simple_partial.ftl");
+        a(page.getMisses()).shouldBeEqual(1);
+        a(page.getHits()).shouldBeEqual(1);
+        a(page.getRenders()).shouldBeEqual(2);
+
+        TemplateStatistics partial = manager.getTemplateStatistics().get("partial/_fruit.ftl");
+        a(partial.getMisses() + partial.getHits()).shouldBeEqual(2);
+        a(partial.getRenders()).shouldBeEqual(2);
+
+        manager.resetTemplateStatistics();
+        a(manager.getTemplateStatistics().isEmpty()).shouldBeTrue();
+    }
+
+    @Test(expected = InitException.class)
+    public void shouldRejectInvalidTemplateCacheStorage() {
+        manager.configureTemplateCache("huge:12", null);
+    }
+
+    @Test
+    public void shouldWarmUpTemplates() throws IOException {
+        File dir = Files.createTempDirectory("templates").toFile();
+        new File(dir, "warm/up").mkdirs();
+        Files.write(new File(dir, "warm/index.ftl").toPath(), "index".getBytes());
+        Files.write(new File(dir, "warm/up/_partial.ftl").toPath(), "partial".getBytes());
+        manager.setTemplateLocation(dir.getPath());
+        manager.resetTemplateStatistics();
+
+        manager.warmUp();
+
+        a(manager.getTemplateStatistics().get("warm/index.ftl").getMisses()).shouldBeEqual(1);
+        a(manager.getTemplateStatistics().get("warm/up/_partial.ftl").getMisses()).shouldBeEqual(1);
+    }
+
+    @Test
+    public void shouldFailWarmUpOnSyntaxError() {
+        InitException exception = null;
+        try {
+            manager.warmUp();
+        } catch (InitException e) {
+            exception = e;
+        }
+        the(exception).shouldNotBeNull();
+        the(exception.getMessage()).shouldContain("hello/bad-bad-template.ftl");
+    }
+
+    @Test
+    public void shouldPullItemsOfStreamWhileWritingList() {
+        StringWriter sw = new StringWriter();
+        StringBuilder writtenBeforeNext = new StringBuilder();
+        Stream<Integer> rows = IntStream.rangeClosed(1, 3).boxed()
+                .peek(row -> writtenBeforeNext.append(sw.toString()).append("|"));
+
+        manager.merge(map("rows", rows), "/streaming/rows", sw);
+
+        a(sw.toString()).shouldBeEqual("[1][2][3]");
+        // an iterator of a stream pulls one item ahead in hasNext(), but not all items up front
+        a(writtenBeforeNext.toString()).shouldBeEqual("||[1]|");
+    }
+
+    @Test
+    public void shouldListStream() {
+        StringWriter sw = new StringWriter();
+        manager.merge(map("rows", IntStream.rangeClosed(1, 3).boxed()), "/streaming/rows", sw);
+        a(sw.toString()).shouldBeEqual("[1][2][3]");
+    }
 }
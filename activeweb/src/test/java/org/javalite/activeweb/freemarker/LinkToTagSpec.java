@@ -51,6 +51,19 @@ public class LinkToTagSpec extends RequestSpec {
         manager.merge(new HashMap(), "/link_to/body_missing", sw);
     }
 
+    @Test
+    public void shouldFailIfBodyBlankBeforeWritingLink() {
+        ViewException exception = null;
+        try {
+            manager.merge(map("context_path", "/bookstore", "activeweb", map("controller", "simple", "restful", false)),
+                    "/link_to/blank_body", null, null, sw);
+        } catch (ViewException e) {
+            exception = e;
+        }
+        the(exception.getMessage()).shouldContain("must provide body text");
+        a(sw.toString()).shouldBeEqual("before ");
+    }
+
      @Test(expected = ViewException.class)
     public void shouldFailIfQueryStringAndQueryParamsDefined() {
         manager.merge(new HashMap(), "/link_to/query_params_and_query_string", sw);
@@ -92,7 +105,7 @@ public class LinkToTagSpec extends RequestSpec {
         manager.merge(map("context_path", "/bookstore", "activeweb", map("controller", "simple", "restful", false)),
                 "/link_to/with_query_params_literal", sw);
 
-        a(sw.toString()).shouldBeEqual("<a href=\"/bookstore/book/read/2?color=yellow&format=wide\" data-link=\"aw\" class=\"red_button\">Click here to read book 2</a>");
+        a(sw.toString()).shouldBeEqual("<a href=\"/bookstore/book/read/2?format=wide&color=yellow\" data-link=\"aw\" class=\"red_button\">Click here to read book 2</a>");
     }
 
     @Test
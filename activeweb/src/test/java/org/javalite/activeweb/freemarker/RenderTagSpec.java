@@ -25,6 +25,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.HashMap;
+import java.util.stream.Stream;
 
 import static org.javalite.common.Collections.*;
 
@@ -137,4 +138,22 @@ public class RenderTagSpec implements JSpecSupport {
 
 
 
+
+    @Test
+    public void shouldLookUpVariablesOfContainerTemplateFromCollectionPartial() {
+        StringWriter sw = new StringWriter();
+        manager.merge(map("fruits", li("apple", "pear"), "fruit_in_basket", "none", "title", "fruits"),
+                "/partial/main_with_collection_partial_and_assigned_variable", sw);
+        a(sw.toString()).shouldBeEqual("apple in wicker fruits; pear in wicker fruits; ");
+    }
+
+    @Test
+    public void shouldRenderPartialWithCollectionThatIsNotList() {
+        StringWriter sw = new StringWriter();
+        Stream<String> fruits = Stream.of("apple", "prune", "pear");
+        manager.merge(map("fruits", fruits), "/partial/main_with_collection_partial_with_first_and_last", sw);
+        a(sw.toString()).shouldBeEqual( "and the fruit is: apple, first: true, last: false " +
+                                        "and the fruit is: prune, first: false, last: false " +
+                                        "and the fruit is: pear, first: false, last: true");
+    }
 }
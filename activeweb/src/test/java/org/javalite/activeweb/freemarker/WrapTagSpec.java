@@ -66,4 +66,24 @@ public class WrapTagSpec {
         it(sw.toString()).shouldBeEqual("[HEADER] [FOOTER]");
     }
 
+    @Test
+    public void shouldPassInnerContentToWrapperThatUsesItAsText() {
+        StringWriter sw = new StringWriter();
+        manager.merge(Collections.EMPTY_MAP, "/wrap/template_basic_trimmed", sw);
+        it(sw.toString()).shouldBeEqual("[HEADER]inner content[FOOTER]");
+    }
+
+    @Test
+    public void shouldPassVariablesAssignedByInnerContentToWrapper() {
+        StringWriter sw = new StringWriter();
+        manager.merge(Collections.EMPTY_MAP, "/wrap/template_assigning_title", sw);
+        it(sw.toString()).shouldBeEqual("[HEADER inner title]inner content[FOOTER]");
+    }
+
+    @Test
+    public void shouldStreamInnerContentIntoWrapper() {
+        StringWriter sw = new StringWriter();
+        manager.merge(Collections.EMPTY_MAP, "/wrap/template_streamed", sw);
+        it(sw.toString()).shouldBeEqual("[HEADER]inner content[FOOTER]");
+    }
 }
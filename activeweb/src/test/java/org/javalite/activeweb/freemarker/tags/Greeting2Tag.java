@@ -36,7 +36,7 @@ public class Greeting2Tag extends FreeMarkerTag {
                 "Hello, ${name}\n" +
                 "</@hello>";
 
-        process(hello, getAllVariables(), writer);
+        process("hello", hello, getAllVariables(), writer);
         writer.write("</greeting>\n");
     }
 }
@@ -0,0 +1 @@
+name is: ${name}, missing value: ${missing_value}
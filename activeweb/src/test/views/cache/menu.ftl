@@ -0,0 +1 @@
+<@cache key="menu" vary=[lang]>${items}</@cache>
\ No newline at end of file
@@ -0,0 +1,2 @@
+<#-- @compile -->
+<p class="book">${book.title} - ${book.price}</p>
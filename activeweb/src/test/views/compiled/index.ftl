@@ -0,0 +1,4 @@
+<#-- @compile -->
+<@content for="title">Books of ${author.name}</@content>
+<h1>${greeting}, "reader"!</h1>
+<@render partial="book"/>
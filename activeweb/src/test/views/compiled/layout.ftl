@@ -0,0 +1,3 @@
+<#-- @compile -->
+<html><head><title><@yield to="title"/></title></head>
+<body>${page_content}</body></html>
@@ -0,0 +1,3 @@
+<p>Très long texte statique, assez long pour être encodé une seule fois – ✓</p>
+<p>${name}</p>
+<p>Fin du texte statique, lui aussi assez long pour être mis en cache ✓</p>
\ No newline at end of file
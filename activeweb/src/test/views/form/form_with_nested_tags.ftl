@@ -0,0 +1 @@
+<@form controller="simple"><@link_to controller="simple" action="index">Back</@link_to></@form>
\ No newline at end of file
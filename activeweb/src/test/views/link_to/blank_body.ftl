@@ -0,0 +1 @@
+before <@link_to action="read">  </@link_to>
\ No newline at end of file
@@ -0,0 +1 @@
+<@form controller="ok" action="create" method="post"></@form>
\ No newline at end of file
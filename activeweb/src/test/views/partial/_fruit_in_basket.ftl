@@ -0,0 +1 @@
+${fruit_in_basket} in ${basket} ${title}; 
\ No newline at end of file
@@ -0,0 +1 @@
+<#assign basket = "wicker"/><@render partial="fruit_in_basket" collection=fruits/>
\ No newline at end of file
@@ -0,0 +1 @@
+<#list rows as row>[${row}]</#list>
\ No newline at end of file
@@ -0,0 +1 @@
+<@wrap with="/wrap/wrapper_with_title"><#assign title="inner title"/>inner content</@wrap>
\ No newline at end of file
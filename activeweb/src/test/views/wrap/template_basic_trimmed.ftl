@@ -0,0 +1 @@
+<@wrap with="/wrap/wrapper_with_trimmed_content">   inner content   </@wrap>
\ No newline at end of file
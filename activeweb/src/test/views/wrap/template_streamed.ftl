@@ -0,0 +1 @@
+<@wrap with="/wrap/wrapper_with_placeholder" stream=true>inner content</@wrap>
\ No newline at end of file
@@ -0,0 +1 @@
+[HEADER ${title}]${page_content}[FOOTER]
\ No newline at end of file
@@ -0,0 +1 @@
+<#if page_content?has_content>[HEADER]${page_content?trim}[FOOTER]</#if>
\ No newline at end of file